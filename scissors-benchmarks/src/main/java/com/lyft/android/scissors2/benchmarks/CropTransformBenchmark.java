@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2.benchmarks;
+
+import com.lyft.android.scissors2.geometry.CropState;
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geometry computed when capturing a crop: the region of the bitmap visible through the viewport, the same region in the stored
+ * pixels of a rotated original, and the viewports of other aspect ratios captured by multi-crops.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CropTransformBenchmark {
+
+    private final CropState state = new CropState(0f, 10f);
+    private final CropState copy = new CropState(0f, 10f);
+    private final float[] region = new float[4];
+
+    @Setup
+    public void setUp() {
+        state.setViewportRatio(1f);
+        state.setOrientation(Orientation.ROTATE_90);
+        state.reset(4000, 3000, 1080, 1920);
+        state.scaleBy(2f);
+        state.translate(120f, -80f);
+    }
+
+    @Benchmark
+    public float[] viewportRegion() {
+        state.mapViewportToBitmap(region);
+        return region;
+    }
+
+    @Benchmark
+    public float[] storedRegion() {
+        state.mapViewportToBitmap(region);
+        Orientation.mapRectFromUpright(state.getOrientation(), state.getSourceWidth(), state.getSourceHeight(), region);
+        return region;
+    }
+
+    @Benchmark
+    public float[] otherViewportRegion() {
+        copy.set(state);
+        copy.changeViewportRatio(16f / 9f);
+        copy.mapViewportToBitmap(region);
+        return region;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2.benchmarks;
+
+import com.lyft.android.scissors2.geometry.CropState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geometry updated by {@code TouchManager} for each touch event and each animation frame: translations clamped to the viewport,
+ * scales clamped to the scale range along with their limits, and focus changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GestureBenchmark {
+
+    private final CropState state = new CropState(0f, 10f);
+    private float direction = 1f;
+
+    @Setup
+    public void setUp() {
+        state.setViewportRatio(1f);
+        state.reset(4000, 3000, 1080, 1920);
+        state.scaleBy(2f);
+    }
+
+    @Benchmark
+    public float scroll() {
+        // Back and forth, so that some moves are clamped
+        direction = -direction;
+        state.translate(direction * 40f, direction * 25f);
+        return state.getPositionX();
+    }
+
+    @Benchmark
+    public float pinch() {
+        direction = -direction;
+        state.scaleBy(direction > 0 ? 1.02f : 0.98f);
+        state.ensureInsideViewport();
+        return state.getScale();
+    }
+
+    @Benchmark
+    public float zoomFrame() {
+        direction = -direction;
+        state.setScale(direction > 0 ? 0.6f : 0.7f);
+        state.setPosition(540f + direction * 30f, 960f);
+        state.ensureInsideViewport();
+        return state.getPositionX();
+    }
+}
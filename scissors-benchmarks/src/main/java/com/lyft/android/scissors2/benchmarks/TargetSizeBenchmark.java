@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2.benchmarks;
+
+import com.lyft.android.scissors2.geometry.CropState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size images are sampled and scaled to before being displayed, as computed by {@code CropViewExtensions.computeTargetSize}
+ * for every load.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TargetSizeBenchmark {
+
+    @Param({ "4000x3000", "20000x2000", "100x100" })
+    public String source;
+
+    private int sourceWidth;
+    private int sourceHeight;
+    private int viewportWidth = 1080;
+    private int viewportHeight = 1080;
+
+    @Setup
+    public void setUp() {
+        final String[] size = source.split("x");
+        sourceWidth = Integer.parseInt(size[0]);
+        sourceHeight = Integer.parseInt(size[1]);
+    }
+
+    @Benchmark
+    public long computeTargetSize() {
+        final float scale = CropState.computeFillScale(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+        return ((long) CropState.scaleSize(sourceWidth, scale) << 32) | CropState.scaleSize(sourceHeight, scale);
+    }
+}
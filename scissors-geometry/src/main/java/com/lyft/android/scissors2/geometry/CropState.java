@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2.geometry;
+
+/**
+ * Geometry of a crop: a bitmap scaled and positioned behind a fixed viewport centered in the available space.
+ * <p>
+ * Bitmaps may be stored in any {@link Orientation}, all coordinates are then those of the bitmap shown upright.
+ * <p>
+ * Only primitive state is held and no method allocates, so crops can be evaluated anywhere, including off the main thread or
+ * on a plain JVM. Not thread safe.
+ */
+public final class CropState {
+
+    private float maximumScale;
+
+    private float viewportRatio;
+    private int viewportPadding;
+    private int orientation = Orientation.NORMAL;
+
+    private int sourceWidth;
+    private int sourceHeight;
+    private int bitmapWidth;
+    private int bitmapHeight;
+    private int availableWidth;
+    private int availableHeight;
+    private int viewportWidth;
+    private int viewportHeight;
+    private boolean laidOut;
+
+    private float minimumScale;
+    private float scale = -1.0f;
+    private float positionX;
+    private float positionY;
+    private int horizontalLimit;
+    private int verticalLimit;
+
+    /**
+     * @param minimumScale Minimum scale until a bitmap has been laid out, after which it fills the viewport at least.
+     * @param maximumScale Maximum scale of the bitmap.
+     */
+    public CropState(float minimumScale, float maximumScale) {
+        this.minimumScale = minimumScale;
+        this.maximumScale = maximumScale;
+    }
+
+    /**
+     * Copy of {@code other}, see {@link #set(CropState)}.
+     */
+    public CropState(CropState other) {
+        set(other);
+    }
+
+    /**
+     * Copies the whole state of {@code other} into this one.
+     */
+    public void set(CropState other) {
+        maximumScale = other.maximumScale;
+        viewportRatio = other.viewportRatio;
+        viewportPadding = other.viewportPadding;
+        orientation = other.orientation;
+        sourceWidth = other.sourceWidth;
+        sourceHeight = other.sourceHeight;
+        bitmapWidth = other.bitmapWidth;
+        bitmapHeight = other.bitmapHeight;
+        availableWidth = other.availableWidth;
+        availableHeight = other.availableHeight;
+        viewportWidth = other.viewportWidth;
+        viewportHeight = other.viewportHeight;
+        laidOut = other.laidOut;
+        minimumScale = other.minimumScale;
+        scale = other.scale;
+        positionX = other.positionX;
+        positionY = other.positionY;
+        horizontalLimit = other.horizontalLimit;
+        verticalLimit = other.verticalLimit;
+    }
+
+    /**
+     * Aspect ratio of the viewport, or 0 to match the bitmap. Applied on next {@link #reset(int, int, int, int)}.
+     */
+    public void setViewportRatio(float viewportRatio) {
+        this.viewportRatio = viewportRatio;
+    }
+
+    public float getViewportRatio() {
+        return viewportRatio;
+    }
+
+    /**
+     * Space between the viewport and the edges of the available space. Applied on next {@link #reset(int, int, int, int)}.
+     */
+    public void setViewportPadding(int viewportPadding) {
+        this.viewportPadding = viewportPadding;
+    }
+
+    /**
+     * EXIF orientation of the bitmap, see {@link Orientation}. Applied on next {@link #reset(int, int, int, int)}.
+     */
+    public void setOrientation(int orientation) {
+        this.orientation = Orientation.sanitize(orientation);
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * Lays out a bitmap in the available space, fitting the viewport and centering the upright bitmap in it at the smallest
+     * scale which fills it. A bitmap of 0 size only lays out the viewport.
+     *
+     * @param bitmapWidth Width of the bitmap as stored, before its orientation is applied.
+     * @param bitmapHeight Height of the bitmap as stored, before its orientation is applied.
+     */
+    public void reset(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
+        this.availableWidth = availableWidth;
+        this.availableHeight = availableHeight;
+        this.laidOut = true;
+        this.sourceWidth = bitmapWidth;
+        this.sourceHeight = bitmapHeight;
+        this.bitmapWidth = Orientation.getUprightWidth(orientation, bitmapWidth, bitmapHeight);
+        this.bitmapHeight = Orientation.getUprightHeight(orientation, bitmapWidth, bitmapHeight);
+        layoutViewport(this.bitmapWidth, this.bitmapHeight);
+
+        if (bitmapWidth > 0 && bitmapHeight > 0) {
+            updateMinimumScale();
+            updateLimits();
+            positionX = getCenterX();
+            positionY = getCenterY();
+            ensureInsideViewport();
+        }
+    }
+
+    private void layoutViewport(int bitmapWidth, int bitmapHeight) {
+        final float imageAspect = (float) bitmapWidth / bitmapHeight;
+        final float viewAspect = (float) availableWidth / availableHeight;
+
+        float ratio = viewportRatio;
+        if (Float.compare(0f, ratio) == 0) {
+            // viewport ratio of 0 means match native ratio of bitmap
+            ratio = imageAspect;
+        }
+
+        if (ratio > viewAspect) {
+            // viewport is wider than view
+            viewportWidth = availableWidth - viewportPadding * 2;
+            viewportHeight = (int) (viewportWidth * (1 / ratio));
+        } else {
+            // viewport is taller than view
+            viewportHeight = availableHeight - viewportPadding * 2;
+            viewportWidth = (int) (viewportHeight * ratio);
+        }
+    }
+
+    private void updateMinimumScale() {
+        final float fw = (float) viewportWidth / bitmapWidth;
+        final float fh = (float) viewportHeight / bitmapHeight;
+        minimumScale = Math.max(fw, fh);
+        scale = Math.max(scale, minimumScale);
+    }
+
+    private void updateLimits() {
+        horizontalLimit = computeLimit((int) (bitmapWidth * scale), viewportWidth);
+        verticalLimit = computeLimit((int) (bitmapHeight * scale), viewportHeight);
+    }
+
+    private static int computeLimit(int bitmapSize, int viewportSize) {
+        return (bitmapSize - viewportSize) / 2;
+    }
+
+    /**
+     * Lays out a viewport of another aspect ratio in place of the current one, keeping the scale and the bitmap point at the
+     * center of the viewport as far as the new viewport allows.
+     *
+     * @param viewportRatio New aspect ratio of the viewport, or 0 to match the bitmap.
+     */
+    public void changeViewportRatio(float viewportRatio) {
+        final float focusX = getFocusX();
+        final float focusY = getFocusY();
+        final float previousScale = scale;
+
+        this.viewportRatio = viewportRatio;
+        reset(sourceWidth, sourceHeight, availableWidth, availableHeight);
+        setScale(Math.max(minimumScale, Math.min(previousScale, maximumScale)));
+        setFocus(focusX, focusY);
+    }
+
+    /**
+     * Moves the bitmap back so that it covers the viewport, as far as its size allows.
+     */
+    public void ensureInsideViewport() {
+        if (!laidOut) {
+            return;
+        }
+
+        float newY = positionY;
+        final int bottom = getCenterY();
+        if (bottom - newY >= verticalLimit) {
+            newY = bottom - verticalLimit;
+        } else if (newY - bottom >= verticalLimit) {
+            newY = bottom + verticalLimit;
+        }
+
+        float newX = positionX;
+        final int right = getCenterX();
+        if (newX <= right - horizontalLimit) {
+            newX = right - horizontalLimit;
+        } else if (newX > right + horizontalLimit) {
+            newX = right + horizontalLimit;
+        }
+
+        positionX = newX;
+        positionY = newY;
+    }
+
+    /**
+     * Sets the scale as is, leaving the position untouched until {@link #ensureInsideViewport()}.
+     */
+    public void setScale(float scale) {
+        this.scale = scale;
+        updateLimits();
+    }
+
+    /**
+     * Multiplies the scale by {@code factor}, clamped between the minimum and maximum scales.
+     */
+    public void scaleBy(float factor) {
+        setScale(Math.max(minimumScale, Math.min(scale * factor, maximumScale)));
+    }
+
+    /**
+     * Sets the position of the bitmap center as is, see {@link #ensureInsideViewport()}.
+     */
+    public void setPosition(float x, float y) {
+        positionX = x;
+        positionY = y;
+    }
+
+    /**
+     * Moves the bitmap by the given offset, keeping it inside the viewport.
+     */
+    public void translate(float dx, float dy) {
+        positionX += dx;
+        positionY += dy;
+        ensureInsideViewport();
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getMinimumScale() {
+        return minimumScale;
+    }
+
+    public float getMaximumScale() {
+        return maximumScale;
+    }
+
+    /**
+     * @return Horizontal position of the bitmap center in the available space.
+     */
+    public float getPositionX() {
+        return positionX;
+    }
+
+    /**
+     * @return Vertical position of the bitmap center in the available space.
+     */
+    public float getPositionY() {
+        return positionY;
+    }
+
+    /**
+     * @return Smallest horizontal position keeping the viewport covered at the current scale, see
+     * {@link #ensureInsideViewport()}.
+     */
+    public float getMinimumPositionX() {
+        return getCenterX() - Math.max(0, horizontalLimit);
+    }
+
+    /**
+     * @return Largest horizontal position keeping the viewport covered at the current scale.
+     */
+    public float getMaximumPositionX() {
+        return getCenterX() + Math.max(0, horizontalLimit);
+    }
+
+    /**
+     * @return Smallest vertical position keeping the viewport covered at the current scale.
+     */
+    public float getMinimumPositionY() {
+        return getCenterY() - Math.max(0, verticalLimit);
+    }
+
+    /**
+     * @return Largest vertical position keeping the viewport covered at the current scale.
+     */
+    public float getMaximumPositionY() {
+        return getCenterY() + Math.max(0, verticalLimit);
+    }
+
+    /**
+     * @return Horizontal center of the available space, where the bitmap is centered after a reset.
+     */
+    public int getCenterX() {
+        return availableWidth / 2;
+    }
+
+    /**
+     * @return Vertical center of the available space, where the bitmap is centered after a reset.
+     */
+    public int getCenterY() {
+        return availableHeight / 2;
+    }
+
+    /**
+     * @return Width of the bitmap shown upright.
+     */
+    public int getBitmapWidth() {
+        return bitmapWidth;
+    }
+
+    /**
+     * @return Height of the bitmap shown upright.
+     */
+    public int getBitmapHeight() {
+        return bitmapHeight;
+    }
+
+    /**
+     * @return Width of the bitmap as stored.
+     */
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    /**
+     * @return Height of the bitmap as stored.
+     */
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public int getAvailableWidth() {
+        return availableWidth;
+    }
+
+    public int getAvailableHeight() {
+        return availableHeight;
+    }
+
+    public int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    public int getViewportHeight() {
+        return viewportHeight;
+    }
+
+    /**
+     * @return Left edge of the viewport in the available space.
+     */
+    public int getViewportLeft() {
+        return (availableWidth - viewportWidth) / 2;
+    }
+
+    /**
+     * @return Top edge of the viewport in the available space.
+     */
+    public int getViewportTop() {
+        return (availableHeight - viewportHeight) / 2;
+    }
+
+    /**
+     * @return Horizontal translation of the scaled bitmap top left corner in the available space.
+     */
+    public float getTranslateX() {
+        return positionX - bitmapWidth / 2.0f * scale;
+    }
+
+    /**
+     * @return Vertical translation of the scaled bitmap top left corner in the available space.
+     */
+    public float getTranslateY() {
+        return positionY - bitmapHeight / 2.0f * scale;
+    }
+
+    /**
+     * @return Horizontal bitmap coordinate shown at the center of the viewport.
+     */
+    public float getFocusX() {
+        return (getViewportLeft() + viewportWidth / 2.0f - getTranslateX()) / scale;
+    }
+
+    /**
+     * @return Vertical bitmap coordinate shown at the center of the viewport.
+     */
+    public float getFocusY() {
+        return (getViewportTop() + viewportHeight / 2.0f - getTranslateY()) / scale;
+    }
+
+    /**
+     * Moves the bitmap so that the given bitmap coordinates show at the center of the viewport, keeping it inside the viewport.
+     */
+    public void setFocus(float focusX, float focusY) {
+        positionX = getViewportLeft() + viewportWidth / 2.0f - (focusX - bitmapWidth / 2.0f) * scale;
+        positionY = getViewportTop() + viewportHeight / 2.0f - (focusY - bitmapHeight / 2.0f) * scale;
+        ensureInsideViewport();
+    }
+
+    /**
+     * Maps the viewport into upright bitmap coordinates, that is the part of the bitmap visible through the viewport, see
+     * {@link Orientation#mapRectFromUpright(int, int, int, float[])} for stored bitmap coordinates.
+     *
+     * @param out Receives left, top, right and bottom, in that order.
+     */
+    public void mapViewportToBitmap(float[] out) {
+        out[0] = (getViewportLeft() - getTranslateX()) / scale;
+        out[1] = (getViewportTop() - getTranslateY()) / scale;
+        out[2] = out[0] + viewportWidth / scale;
+        out[3] = out[1] + viewportHeight / scale;
+    }
+
+    /**
+     * @return Scale at which a {@code sourceWidth x sourceHeight} image covers a {@code viewportWidth x viewportHeight} viewport
+     * with as little excess as possible.
+     */
+    public static float computeFillScale(int sourceWidth, int sourceHeight, int viewportWidth, int viewportHeight) {
+        if (sourceWidth == viewportWidth && sourceHeight == viewportHeight) {
+            return 1f; // Fail fast for when source matches exactly on viewport
+        }
+
+        if ((long) sourceWidth * viewportHeight > (long) viewportWidth * sourceHeight) {
+            return (float) viewportHeight / (float) sourceHeight;
+        } else {
+            return (float) viewportWidth / (float) sourceWidth;
+        }
+    }
+
+    /**
+     * @return {@code size} scaled by {@code scale}, rounded to the nearest pixel.
+     */
+    public static int scaleSize(int size, float scale) {
+        return (int) ((size * scale) + 0.5f);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2.geometry;
+
+/**
+ * EXIF orientations, describing how the stored pixels of an image map to the image as it should be shown, upright.
+ * <p>
+ * Each orientation is a horizontal mirror, if any, followed by a clockwise rotation of the stored pixels.
+ */
+public final class Orientation {
+
+    public static final int NORMAL = 1;
+    public static final int FLIP_HORIZONTAL = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int FLIP_VERTICAL = 4;
+    public static final int TRANSPOSE = 5;
+    public static final int ROTATE_90 = 6;
+    public static final int TRANSVERSE = 7;
+    public static final int ROTATE_270 = 8;
+
+    private Orientation() {
+    }
+
+    /**
+     * @return {@code orientation} if it is a valid EXIF orientation, else {@link #NORMAL}, as for undefined orientations.
+     */
+    public static int sanitize(int orientation) {
+        return orientation >= NORMAL && orientation <= ROTATE_270 ? orientation : NORMAL;
+    }
+
+    /**
+     * @return Whether width and height are swapped when shown upright.
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= TRANSPOSE && orientation <= ROTATE_270;
+    }
+
+    /**
+     * @return Whether stored pixels are mirrored horizontally before being rotated.
+     */
+    public static boolean isMirrored(int orientation) {
+        return orientation == FLIP_HORIZONTAL || orientation == FLIP_VERTICAL
+                || orientation == TRANSPOSE || orientation == TRANSVERSE;
+    }
+
+    /**
+     * @return Clockwise rotation in degrees applied to stored pixels, after the mirror if any.
+     */
+    public static int getRotation(int orientation) {
+        switch (orientation) {
+            case ROTATE_180:
+            case FLIP_VERTICAL:
+                return 180;
+            case ROTATE_90:
+            case TRANSVERSE:
+                return 90;
+            case ROTATE_270:
+            case TRANSPOSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return Width of a {@code width x height} stored image once shown upright.
+     */
+    public static int getUprightWidth(int orientation, int width, int height) {
+        return isTransposed(orientation) ? height : width;
+    }
+
+    /**
+     * @return Height of a {@code width x height} stored image once shown upright.
+     */
+    public static int getUprightHeight(int orientation, int width, int height) {
+        return isTransposed(orientation) ? width : height;
+    }
+
+    /**
+     * Maps a rectangle of the upright image back into a {@code width x height} stored image.
+     *
+     * @param rect Left, top, right and bottom, in that order, mapped in place.
+     */
+    public static void mapRectFromUpright(int orientation, int width, int height, float[] rect) {
+        final float left = rect[0];
+        final float top = rect[1];
+        final float right = rect[2];
+        final float bottom = rect[3];
+        switch (orientation) {
+            case FLIP_HORIZONTAL:
+                set(rect, width - right, top, width - left, bottom);
+                break;
+            case ROTATE_180:
+                set(rect, width - right, height - bottom, width - left, height - top);
+                break;
+            case FLIP_VERTICAL:
+                set(rect, left, height - bottom, right, height - top);
+                break;
+            case TRANSPOSE:
+                set(rect, top, left, bottom, right);
+                break;
+            case ROTATE_90:
+                set(rect, top, height - right, bottom, height - left);
+                break;
+            case TRANSVERSE:
+                set(rect, width - bottom, height - right, width - top, height - left);
+                break;
+            case ROTATE_270:
+                set(rect, width - bottom, left, width - top, right);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void set(float[] rect, float left, float top, float right, float bottom) {
+        rect[0] = left;
+        rect[1] = top;
+        rect[2] = right;
+        rect[3] = bottom;
+    }
+}
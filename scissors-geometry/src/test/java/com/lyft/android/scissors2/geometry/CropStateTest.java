@@ -0,0 +1,182 @@
+package com.lyft.android.scissors2.geometry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class CropStateTest {
+
+    private static final float EPSILON = 0.001f;
+
+    private CropState state;
+
+    @Before
+    public void setUp() {
+        state = new CropState(1f, 10f);
+        state.setViewportRatio(1f);
+    }
+
+    @Test
+    public void viewportFitsAvailableSpace() {
+        state.setViewportRatio(2f);
+        state.reset(400, 300, 1000, 800);
+
+        assertThat(state.getViewportWidth()).isEqualTo(1000);
+        assertThat(state.getViewportHeight()).isEqualTo(500);
+        assertThat(state.getViewportLeft()).isEqualTo(0);
+        assertThat(state.getViewportTop()).isEqualTo(150);
+
+        state.setViewportRatio(0.5f);
+        state.reset(400, 300, 1000, 800);
+
+        assertThat(state.getViewportWidth()).isEqualTo(400);
+        assertThat(state.getViewportHeight()).isEqualTo(800);
+    }
+
+    @Test
+    public void viewportMatchesBitmapWhenRatioIsZero() {
+        state.setViewportRatio(0f);
+        state.setViewportPadding(50);
+        state.reset(300, 600, 1000, 1000);
+
+        assertThat(state.getViewportHeight()).isEqualTo(900);
+        assertThat(state.getViewportWidth()).isEqualTo(450);
+    }
+
+    @Test
+    public void resetCentersBitmapFillingViewport() {
+        state.reset(400, 200, 1000, 1000);
+
+        assertThat(state.getScale()).isEqualTo(5f);
+        assertThat(state.getMinimumScale()).isEqualTo(5f);
+        assertThat(state.getPositionX()).isEqualTo(500f);
+        assertThat(state.getPositionY()).isEqualTo(500f);
+        assertThat(state.getTranslateX()).isEqualTo(-500f);
+        assertThat(state.getTranslateY()).isEqualTo(0f);
+    }
+
+    @Test
+    public void scaleIsClamped() {
+        state.reset(400, 200, 1000, 1000);
+
+        state.scaleBy(0.5f);
+        assertThat(state.getScale()).isEqualTo(5f);
+
+        state.scaleBy(1.5f);
+        assertThat(state.getScale()).isEqualTo(7.5f);
+
+        state.scaleBy(100f);
+        assertThat(state.getScale()).isEqualTo(10f);
+    }
+
+    @Test
+    public void translationKeepsViewportCovered() {
+        state.reset(400, 200, 1000, 1000);
+
+        state.translate(10000, 10000);
+        assertThat(state.getPositionX()).isEqualTo(1000f);
+        assertThat(state.getPositionY()).isEqualTo(500f);
+
+        state.translate(-10000, -10000);
+        assertThat(state.getPositionX()).isEqualTo(0f);
+        assertThat(state.getPositionY()).isEqualTo(500f);
+    }
+
+    @Test
+    public void positionBoundsMatchTranslationLimits() {
+        state.reset(400, 200, 1000, 1000);
+        state.scaleBy(2f);
+
+        state.translate(10000, 10000);
+        assertThat(state.getMaximumPositionX()).isEqualTo(state.getPositionX());
+        assertThat(state.getMaximumPositionY()).isEqualTo(state.getPositionY());
+
+        state.translate(-10000, -10000);
+        assertThat(state.getMinimumPositionX()).isEqualTo(state.getPositionX());
+        assertThat(state.getMinimumPositionY()).isEqualTo(state.getPositionY());
+    }
+
+    @Test
+    public void viewportMapsToVisibleBitmapRegion() {
+        state.setViewportPadding(100);
+        state.reset(400, 200, 1000, 1000);
+        final float[] region = new float[4];
+
+        state.mapViewportToBitmap(region);
+        assertThat(region[0]).isEqualTo(100f, offset(EPSILON));
+        assertThat(region[1]).isEqualTo(0f, offset(EPSILON));
+        assertThat(region[2]).isEqualTo(300f, offset(EPSILON));
+        assertThat(region[3]).isEqualTo(200f, offset(EPSILON));
+
+        state.translate(-10000, 0);
+        state.mapViewportToBitmap(region);
+        assertThat(region[0]).isEqualTo(200f, offset(EPSILON));
+        assertThat(region[2]).isEqualTo(400f, offset(EPSILON));
+    }
+
+    @Test
+    public void changingViewportRatioKeepsFocusAndScale() {
+        state.reset(400, 400, 1000, 1000);
+        state.scaleBy(2f);
+        state.translate(-200, 0);
+        final float focusX = state.getFocusX();
+        final float focusY = state.getFocusY();
+
+        CropState banner = new CropState(state);
+        banner.changeViewportRatio(2f);
+
+        assertThat(banner.getViewportWidth()).isEqualTo(1000);
+        assertThat(banner.getViewportHeight()).isEqualTo(500);
+        assertThat(banner.getScale()).isEqualTo(state.getScale());
+        assertThat(banner.getFocusX()).isEqualTo(focusX, offset(EPSILON));
+        assertThat(banner.getFocusY()).isEqualTo(focusY, offset(EPSILON));
+        assertThat(state.getViewportHeight()).isEqualTo(1000);
+    }
+
+    @Test
+    public void changingViewportRatioKeepsViewportCovered() {
+        state.setViewportRatio(0.5f);
+        state.reset(400, 200, 1000, 1000);
+        state.translate(-10000, 0);
+
+        state.changeViewportRatio(1f);
+
+        assertThat(state.getScale()).isEqualTo(5f);
+        final float[] region = new float[4];
+        state.mapViewportToBitmap(region);
+        assertThat(region[0]).isEqualTo(200f, offset(EPSILON));
+        assertThat(region[2]).isEqualTo(400f, offset(EPSILON));
+    }
+
+    @Test
+    public void rotatedBitmapIsLaidOutUpright() {
+        state.setOrientation(Orientation.ROTATE_90);
+        state.reset(400, 200, 1000, 1000);
+
+        assertThat(state.getSourceWidth()).isEqualTo(400);
+        assertThat(state.getBitmapWidth()).isEqualTo(200);
+        assertThat(state.getBitmapHeight()).isEqualTo(400);
+        assertThat(state.getScale()).isEqualTo(5f);
+
+        state.translate(0, -10000);
+        state.changeViewportRatio(2f);
+        assertThat(state.getBitmapWidth()).isEqualTo(200);
+        assertThat(state.getViewportHeight()).isEqualTo(500);
+    }
+
+    @Test
+    public void undefinedOrientationIsNormal() {
+        state.setOrientation(0);
+        assertThat(state.getOrientation()).isEqualTo(Orientation.NORMAL);
+    }
+
+    @Test
+    public void fillScaleCoversViewport() {
+        assertThat(CropState.computeFillScale(100, 56, 100, 56)).isEqualTo(1f);
+        assertThat(CropState.computeFillScale(200, 100, 100, 100)).isEqualTo(1f);
+        assertThat(CropState.computeFillScale(100, 200, 50, 50)).isEqualTo(0.5f);
+        assertThat(CropState.scaleSize(89, CropState.computeFillScale(89, 45, 100, 56))).isGreaterThan(100);
+    }
+}
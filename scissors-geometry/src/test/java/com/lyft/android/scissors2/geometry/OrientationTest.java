@@ -0,0 +1,48 @@
+package com.lyft.android.scissors2.geometry;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrientationTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 200;
+
+    @Test
+    public void transposedOrientationsSwapSize() {
+        for (int orientation = Orientation.NORMAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            final boolean transposed = orientation >= Orientation.TRANSPOSE;
+            assertThat(Orientation.isTransposed(orientation)).isEqualTo(transposed);
+            assertThat(Orientation.getUprightWidth(orientation, WIDTH, HEIGHT)).isEqualTo(transposed ? HEIGHT : WIDTH);
+            assertThat(Orientation.getUprightHeight(orientation, WIDTH, HEIGHT)).isEqualTo(transposed ? WIDTH : HEIGHT);
+        }
+    }
+
+    @Test
+    public void uprightTopLeftCornerMapsBackToStoredCorner() {
+        // Upright top left 10x10 corner, as stored for each orientation
+        assertCorner(Orientation.NORMAL, 0, 0, 10, 10);
+        assertCorner(Orientation.FLIP_HORIZONTAL, 390, 0, 400, 10);
+        assertCorner(Orientation.ROTATE_180, 390, 190, 400, 200);
+        assertCorner(Orientation.FLIP_VERTICAL, 0, 190, 10, 200);
+        assertCorner(Orientation.TRANSPOSE, 0, 0, 10, 10);
+        assertCorner(Orientation.ROTATE_90, 0, 190, 10, 200);
+        assertCorner(Orientation.TRANSVERSE, 390, 190, 400, 200);
+        assertCorner(Orientation.ROTATE_270, 390, 0, 400, 10);
+    }
+
+    @Test
+    public void uprightRectKeepsItsSize() {
+        final float[] rect = { 20, 50, 120, 80 };
+        Orientation.mapRectFromUpright(Orientation.ROTATE_90, WIDTH, HEIGHT, rect);
+
+        assertThat(rect).containsExactly(50, 80, 80, 180);
+    }
+
+    private static void assertCorner(int orientation, float left, float top, float right, float bottom) {
+        final float[] rect = { 0, 0, 10, 10 };
+        Orientation.mapRectFromUpright(orientation, WIDTH, HEIGHT, rect);
+        assertThat(rect).as("orientation %d", orientation).containsExactly(left, top, right, bottom);
+    }
+}
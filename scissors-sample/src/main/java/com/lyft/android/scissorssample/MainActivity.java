@@ -33,6 +33,7 @@ import butterknife.ButterKnife;
 import butterknife.OnClick;
 import butterknife.OnTouch;
 import com.lyft.android.scissors2.CropView;
+import com.lyft.android.scissors2.WriteResult;
 import com.squareup.leakcanary.RefWatcher;
 import java.io.File;
 import java.util.List;
@@ -111,18 +112,18 @@ public class MainActivity extends Activity {
     public void onCropClicked() {
         final File croppedFile = new File(getCacheDir(), "cropped.jpg");
 
-        Observable<Void> onSave = Observable.from(cropView.extensions()
+        Observable<WriteResult> onSave = Observable.from(cropView.extensions()
                 .crop()
                 .quality(100)
                 .format(JPEG)
-                .into(croppedFile))
+                .intoWithResult(croppedFile))
                 .subscribeOn(io())
                 .observeOn(mainThread());
 
         subscriptions.add(onSave
-                .subscribe(new Action1<Void>() {
+                .subscribe(new Action1<WriteResult>() {
                     @Override
-                    public void call(Void nothing) {
+                    public void call(WriteResult result) {
                         CropResultActivity.startUsing(croppedFile, MainActivity.this);
                     }
                 }));
@@ -24,6 +24,7 @@ import android.widget.ImageView;
  *
  * @see PicassoBitmapLoader
  * @see GlideBitmapLoader
+ * @see NativeBitmapLoader
  */
 public interface BitmapLoader {
 
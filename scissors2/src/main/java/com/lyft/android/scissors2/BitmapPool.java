@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Pool of mutable bitmaps reused as crop destinations instead of allocating new ones, must be thread safe.
+ *
+ * @see LruBitmapPool
+ * @see CropView#setBitmapPool(BitmapPool)
+ */
+public interface BitmapPool {
+
+    /**
+     * @return A mutable bitmap of exactly the given size and config, with undefined content, or <code>null</code> if none is available.
+     */
+    @Nullable
+    Bitmap get(int width, int height, @NonNull Bitmap.Config config);
+
+    /**
+     * Hands a bitmap over to the pool, which may recycle it. The bitmap must not be used afterwards.
+     */
+    void put(@NonNull Bitmap bitmap);
+
+    /**
+     * Recycles all pooled bitmaps.
+     */
+    void clear();
+}
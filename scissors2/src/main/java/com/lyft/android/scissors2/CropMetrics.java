@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.Callable;
+
+/**
+ * Listener receiving how long each stage of loading and cropping took, along with the sizes of the bitmaps and outputs involved,
+ * to attribute latency to a stage.
+ * <p>
+ * Install one for every {@link LoadRequest} and {@link CropRequest} with {@link #setGlobal(CropMetrics)}, or for a single one
+ * with {@link LoadRequest#metrics(CropMetrics)} or {@link CropRequest#metrics(CropMetrics)}, in which case the global listener
+ * is told as well. Synchronous {@link CropView#crop()} calls are reported to the global listener. Stages are reported from the
+ * thread they ran on, right after they complete, so listeners must be thread safe and quick. Nothing is measured unless a
+ * listener is installed.
+ */
+public abstract class CropMetrics {
+
+    private static final String TAG = "scissors.CropMetrics";
+
+    /** Stages of loading and cropping, in the order a bitmap goes through them. */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ Stage.LOAD, Stage.DECODE, Stage.CROP, Stage.ENCODE, Stage.WRITE })
+    public @interface Stage {
+
+        /** From the {@link BitmapLoader} being handed the model to the loaded bitmap being set, ending on the main thread. */
+        int LOAD = 0;
+        /**
+         * Decoding and scaling the image for display, in the background, as part of {@link #LOAD}. Only reported by
+         * {@link NativeBitmapLoader}, other loaders decode through their own library.
+         */
+        int DECODE = 1;
+        /** Drawing the viewport into the cropped bitmap, or decoding the cropped region of the original. */
+        int CROP = 2;
+        /** Compressing the cropped bitmap, which streams into the output. */
+        int ENCODE = 3;
+        /** Creating, flushing, syncing and renaming the output file, beyond the time spent encoding into it. Files only. */
+        int WRITE = 4;
+    }
+
+    private static volatile CropMetrics global;
+
+    /**
+     * Sets the listener told about every request.
+     *
+     * @param metrics Listener to install or <code>null</code> to remove it.
+     */
+    public static void setGlobal(@Nullable CropMetrics metrics) {
+        global = metrics;
+    }
+
+    @Nullable
+    public static CropMetrics getGlobal() {
+        return global;
+    }
+
+    /**
+     * Called once a stage completes, from the thread it ran on.
+     */
+    public abstract void onStage(@NonNull Measurement measurement);
+
+    /**
+     * @return The listeners to tell about a request with given listener of its own, or <code>null</code> if there are none.
+     */
+    @Nullable
+    static CropMetrics resolve(@Nullable CropMetrics metrics) {
+        final CropMetrics global = CropMetrics.global;
+        if (metrics == null || metrics == global) {
+            return global;
+        }
+        return global != null ? new Both(metrics, global) : metrics;
+    }
+
+    /**
+     * @return The listeners of the load in progress into {@code imageView}, see {@link LoadRequest#metrics(CropMetrics)}.
+     */
+    @Nullable
+    static CropMetrics forLoad(ImageView imageView) {
+        final CropMetrics metrics = imageView instanceof CropView ? ((CropView) imageView).getLoadMetrics() : null;
+        return metrics != null ? metrics : global;
+    }
+
+    /**
+     * @return {@code source} reporting the time taken to produce its bitmap as {@link Stage#CROP}, or {@code source} itself
+     * without listeners.
+     */
+    static Callable<Bitmap> measureCrop(final Callable<Bitmap> source, @Nullable final CropMetrics metrics) {
+        if (metrics == null) {
+            return source;
+        }
+        return new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws Exception {
+                final long start = System.nanoTime();
+                final Bitmap bitmap = source.call();
+                report(metrics, Stage.CROP, System.nanoTime() - start, bitmap, -1, null);
+                return bitmap;
+            }
+        };
+    }
+
+    static void report(CropMetrics metrics, @Stage int stage, long durationNanos, @Nullable Bitmap bitmap,
+            long outputByteCount, @Nullable BitmapLoader loader) {
+        final boolean valid = bitmap != null && !bitmap.isRecycled();
+        report(metrics, stage, durationNanos, valid ? bitmap.getWidth() : 0, valid ? bitmap.getHeight() : 0,
+                valid ? bitmap.getByteCount() : 0, outputByteCount, loader);
+    }
+
+    static void report(CropMetrics metrics, @Stage int stage, long durationNanos, int width, int height, long bitmapByteCount,
+            long outputByteCount, @Nullable BitmapLoader loader) {
+        try {
+            metrics.onStage(new Measurement(stage, durationNanos, width, height, bitmapByteCount, outputByteCount, loader,
+                    Thread.currentThread().getName()));
+        } catch (RuntimeException e) {
+            // A faulty listener must not fail the crop it measures
+            if (BuildConfig.DEBUG) {
+                Log.e(TAG, "Error reporting stage " + stage, e);
+            }
+        }
+    }
+
+    /**
+     * What a single stage took.
+     */
+    public static final class Measurement {
+
+        private final @Stage int stage;
+        private final long durationNanos;
+        private final int width;
+        private final int height;
+        private final long bitmapByteCount;
+        private final long outputByteCount;
+        private final BitmapLoader loader;
+        private final String threadName;
+
+        Measurement(@Stage int stage, long durationNanos, int width, int height, long bitmapByteCount, long outputByteCount,
+                @Nullable BitmapLoader loader, String threadName) {
+            this.stage = stage;
+            this.durationNanos = durationNanos;
+            this.width = width;
+            this.height = height;
+            this.bitmapByteCount = bitmapByteCount;
+            this.outputByteCount = outputByteCount;
+            this.loader = loader;
+            this.threadName = threadName;
+        }
+
+        @Stage
+        public int getStage() {
+            return stage;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return Width of the bitmap loaded, decoded, cropped or encoded, or 0 if there was none.
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return Height of the bitmap loaded, decoded, cropped or encoded, or 0 if there was none.
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return Bytes held by that bitmap. When cropping in strips, see {@link CropRequest#maxMemory(long)}, bytes held by a
+         * single strip while cropping and 0 while encoding and writing.
+         */
+        public long getBitmapByteCount() {
+            return bitmapByteCount;
+        }
+
+        /**
+         * @return Size of the encoded output in bytes for {@link Stage#ENCODE} and {@link Stage#WRITE}, -1 for other stages.
+         */
+        public long getOutputByteCount() {
+            return outputByteCount;
+        }
+
+        /**
+         * @return Loader used for {@link Stage#LOAD} and {@link Stage#DECODE}, <code>null</code> for other stages.
+         */
+        @Nullable
+        public BitmapLoader getLoader() {
+            return loader;
+        }
+
+        /**
+         * @return Name of the thread the stage ended on.
+         */
+        @NonNull
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Override
+        public String toString() {
+            return "Measurement{stage=" + stage
+                    + ", durationNanos=" + durationNanos
+                    + ", width=" + width
+                    + ", height=" + height
+                    + ", bitmapByteCount=" + bitmapByteCount
+                    + ", outputByteCount=" + outputByteCount
+                    + ", loader=" + (loader != null ? loader.getClass().getSimpleName() : null)
+                    + ", threadName=" + threadName
+                    + '}';
+        }
+    }
+
+    private static class Both extends CropMetrics {
+
+        private final CropMetrics first;
+        private final CropMetrics second;
+
+        Both(CropMetrics first, CropMetrics second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void onStage(@NonNull Measurement measurement) {
+            try {
+                first.onStage(measurement);
+            } finally {
+                second.onStage(measurement);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of a cropped bitmap, written from a background thread.
+ */
+abstract class CropOutput {
+
+    abstract void write(Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws IOException;
+
+    /** Called when no bitmap will be written, whether the crop failed or got cancelled. */
+    void abandon() {
+    }
+
+    /**
+     * @param sync Whether to sync the file to storage before renaming it into place, see {@link FileSink}.
+     * @param metrics Listeners told about encoding and writing, if any.
+     */
+    static CropOutput toFile(final File file, final boolean sync, @Nullable final CropMetrics metrics) {
+        return new CropOutput() {
+            @Override
+            void write(Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws IOException {
+                Utils.writeToFile(bitmap, format, quality, file, sync, metrics);
+            }
+        };
+    }
+
+    /**
+     * @param metrics Listeners told about encoding, if any.
+     */
+    static CropOutput toStream(final OutputStream outputStream, final boolean closeWhenDone,
+            @Nullable final CropMetrics metrics) {
+        return new CropOutput() {
+            @Override
+            void write(Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws IOException {
+                try {
+                    Utils.writeToStream(bitmap, format, quality, outputStream, metrics);
+                } finally {
+                    abandon();
+                }
+            }
+
+            @Override
+            void abandon() {
+                if (closeWhenDone) {
+                    Utils.closeQuietly(outputStream);
+                }
+            }
+        };
+    }
+}
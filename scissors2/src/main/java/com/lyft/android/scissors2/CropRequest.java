@@ -1,17 +1,74 @@
 package com.lyft.android.scissors2;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.io.File;
 import java.io.OutputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
 public class CropRequest {
 
+  /** Order in which requests waiting for the default executor are run, higher first. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({ Priority.LOW, Priority.NORMAL, Priority.HIGH })
+  public @interface Priority {
+
+    /** Speculative work, such as pre-exporting a crop the user may not keep. */
+    int LOW = 0;
+    int NORMAL = 1;
+    /** Work the user is waiting on. */
+    int HIGH = 2;
+  }
+
+  private static final Callable<Bitmap> NO_BITMAP = new Callable<Bitmap>() {
+    @Override
+    public Bitmap call() {
+      throw new IllegalStateException("No bitmap to crop.");
+    }
+  };
+
+  private static final StripSource NO_STRIPS = new StripSource() {
+    @Override
+    void open() {
+      throw new IllegalStateException("No bitmap to crop.");
+    }
+
+    @Override
+    int getWidth() {
+      return 0;
+    }
+
+    @Override
+    int getHeight() {
+      return 0;
+    }
+
+    @Override
+    void onDraw(Canvas canvas, int top, int rows) {
+    }
+  };
+
   private final CropView cropView;
   private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
   private int quality = CropViewConfig.DEFAULT_IMAGE_QUALITY;
+  private boolean fromOriginal;
+  private OriginalSource originalSource;
+  private long maxMemory;
+  private boolean sync;
+  private OutputSize outputSize = OutputSize.ORIGINAL;
+  private Executor executor = Utils.defaultExecutor();
+  private @Priority int priority = Priority.NORMAL;
+  private CropMetrics metrics;
 
   CropRequest(@NonNull CropView cropView) {
     Utils.checkNotNull(cropView, "cropView == null");
@@ -41,26 +98,289 @@ public class CropRequest {
   }
 
   /**
-   * Asynchronously flush cropped bitmap into provided file, creating parent directory if required. This is performed in another
-   * thread.
+   * Crop from the original image at its full resolution instead of the bitmap displayed by {@link CropView}, which has usually
+   * been downscaled to the viewport. Only the region visible through the viewport gets decoded, so the original is never held
+   * in memory as a whole.
+   * <p>
+   * The original is the model given to the last {@link LoadRequest#load(Object)}, use {@link #fromOriginal(Object)} when the
+   * bitmap has been set by other means.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest fromOriginal() {
+    this.fromOriginal = true;
+    this.originalSource = null;
+    return this;
+  }
+
+  /**
+   * Crop from the given original image at its full resolution, see {@link #fromOriginal()}.
+   *
+   * @param model Original image of the bitmap displayed by {@link CropView}, one of {@link android.net.Uri}, {@link File},
+   * {@link String} path or uri, or {@link Integer} raw resource.
+   * @return current request for chaining.
+   */
+  public CropRequest fromOriginal(@NonNull Object model) {
+    Utils.checkNotNull(model, "model == null");
+    this.fromOriginal = true;
+    this.originalSource = new OriginalSource(cropView.getContext(), model);
+    return this;
+  }
+
+  /**
+   * Size of the cropped bitmap, defaults to the viewport size or to the size of the cropped region of the original when using
+   * {@link #fromOriginal()}. Scaling is part of the crop itself so the cropped bitmap is only ever allocated and drawn at this size.
+   * <p>
+   * The crop is scaled to exactly this size, so an aspect ratio other than the viewport's stretches it. Use
+   * {@link #maxOutputSize(int, int)} to keep the viewport aspect ratio.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest outputSize(int width, int height) {
+    this.outputSize = OutputSize.exactly(width, height);
+    return this;
+  }
+
+  /**
+   * Bounds the size of the cropped bitmap, scaling it down while keeping the viewport aspect ratio if it does not fit, see
+   * {@link #outputSize(int, int)}.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest maxOutputSize(int maxWidth, int maxHeight) {
+    this.outputSize = OutputSize.atMost(maxWidth, maxHeight);
+    return this;
+  }
+
+  /**
+   * Bounds both dimensions of the cropped bitmap to {@code maxSize}, see {@link #maxOutputSize(int, int)}.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest maxOutputSize(int maxSize) {
+    return maxOutputSize(maxSize, maxSize);
+  }
+
+  /**
+   * Executor to run this request on, defaults to a bounded pool of background priority threads shared by all requests.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest executor(@NonNull Executor executor) {
+    Utils.checkNotNull(executor, "executor == null");
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Priority of this request, defaults to {@link Priority#NORMAL}. Requests of higher priority waiting for the default executor
+   * run first.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest priority(@Priority int priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  /**
+   * Listener told how long cropping, encoding and writing took for this request, in addition to the global one, see
+   * {@link CropMetrics#setGlobal(CropMetrics)}.
+   *
+   * @param metrics Listener to tell or <code>null</code> for the global one only.
+   * @return current request for chaining.
+   */
+  public CropRequest metrics(@Nullable CropMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Render and encode the cropped bitmap in horizontal strips, so that peak memory is bounded by {@code maxMemory} instead of
+   * growing with the size of the crop. Useful for very large crops, especially along with {@link #fromOriginal()}.
+   * <p>
+   * Only {@link Bitmap.CompressFormat#JPEG} and {@link Bitmap.CompressFormat#PNG} are supported.
    *
-   * @param file Must have permissions to write, will be created if doesn't exist or overwrite if it does.
-   * @return {@link Future} used to cancel or wait for this request.
+   * @param maxMemory Approximate number of bytes to use at most while cropping, must be &gt; 0.
+   * @return current request for chaining.
+   */
+  public CropRequest maxMemory(long maxMemory) {
+    Utils.checkArg(maxMemory > 0, "maxMemory must be > 0");
+    this.maxMemory = maxMemory;
+    return this;
+  }
+
+  /**
+   * Whether to sync files to storage before renaming them into place, defaults to <code>false</code>. Files are always written
+   * to a temporary file first and only renamed into place once complete, so a crash never leaves a truncated file behind.
+   * Syncing also guarantees a file survives power loss once written, at the cost of waiting on storage.
+   *
+   * @return current request for chaining.
+   */
+  public CropRequest sync(boolean sync) {
+    this.sync = sync;
+    return this;
+  }
+
+  /**
+   * Asynchronously flush cropped bitmap into provided file, creating parent directory if required. The viewport is captured
+   * right away, then the crop is drawn and encoded in another thread.
+   *
+   * @param file Must have permissions to write, will be created if doesn't exist or overwrite if it does. The file is
+   * replaced atomically, once fully written.
+   * @return {@link Future} used to cancel or wait for this request, failing with whatever failed, see
+   * {@link #intoWithResult(File)} to find out about the written file.
    */
   public Future<Void> into(@NonNull File file) {
-    final Bitmap croppedBitmap = cropView.crop();
-    return Utils.flushToFile(croppedBitmap, format, quality, file);
+    return Utils.flushToFile(Utils.ignoringResult(fileWriter(file)), executor, priority);
+  }
+
+  /**
+   * Asynchronously flush cropped bitmap into provided file, see {@link #into(File)}.
+   *
+   * @return {@link Future} used to cancel or wait for this request, holding the {@link WriteResult} once written and failing
+   * with whatever failed, such as an {@link java.io.IOException} wrapped in an
+   * {@link java.util.concurrent.ExecutionException}.
+   */
+  public Future<WriteResult> intoWithResult(@NonNull File file) {
+    return Utils.flushToFile(fileWriter(file), executor, priority);
   }
 
   /**
-   * Asynchronously flush cropped bitmap into provided stream.
+   * Captures the viewport, see {@link #into(File)}.
+   */
+  private Callable<WriteResult> fileWriter(File file) {
+    final CropSnapshot snapshot = cropView.snapshot();
+    final CropMetrics metrics = CropMetrics.resolve(this.metrics);
+    if (maxMemory > 0) {
+      return Utils.fileWriter(cropStrips(snapshot), format, quality, file, sync, maxMemory, cropView.getBitmapPool(),
+          metrics);
+    }
+    return Utils.fileWriter(crop(snapshot, metrics), format, quality, file, sync, cropView.getBitmapPool(), metrics);
+  }
+
+  /**
+   * Asynchronously flush cropped bitmap into provided stream. The viewport is captured right away, then the crop is drawn and
+   * encoded in another thread.
    *
    * @param outputStream Stream to write to
    * @param closeWhenDone wetter or not to close provided stream once flushing is done
-   * @return {@link Future} used to cancel or wait for this request.
+   * @return {@link Future} used to cancel or wait for this request, failing with whatever failed.
    */
   public Future<Void> into(@NonNull OutputStream outputStream, boolean closeWhenDone) {
-    final Bitmap croppedBitmap = cropView.crop();
-    return Utils.flushToStream(croppedBitmap, format, quality, outputStream, closeWhenDone);
+    final CropSnapshot snapshot = cropView.snapshot();
+    final CropMetrics metrics = CropMetrics.resolve(this.metrics);
+    if (maxMemory > 0) {
+      return Utils.flushToStream(cropStrips(snapshot), format, quality, outputStream, closeWhenDone, maxMemory,
+          cropView.getBitmapPool(), executor, priority, metrics);
+    }
+    return Utils.flushToStream(crop(snapshot, metrics), format, quality, outputStream, closeWhenDone,
+        cropView.getBitmapPool(), executor, priority, metrics);
+  }
+
+  /**
+   * Asynchronously flush the crop at several sizes into provided files, rendering it once then downscaling it by halves from one
+   * size to the next smaller one. Each size is encoded concurrently, as soon as it is ready. This is performed in other threads.
+   * <p>
+   * Sizes replace {@link #outputSize(int, int)}, and cannot be combined with {@link #maxMemory(long)}.
+   *
+   * @param files Files to write to, keyed by maximum width and height of the bitmap written into each, see
+   * {@link #maxOutputSize(int)}.
+   * @return {@link Future} used to cancel or wait for this request, done once every file has been written, or failing with the
+   * first failure once every other file has been written or abandoned.
+   */
+  public Future<Void> into(@NonNull Map<Integer, File> files) {
+    final int[] sizes = sizes(files);
+    final CropMetrics metrics = CropMetrics.resolve(this.metrics);
+    final CropOutput[] outputs = new CropOutput[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      outputs[i] = CropOutput.toFile(files.get(sizes[i]), sync, metrics);
+    }
+    return flushLadder(sizes, outputs, metrics);
+  }
+
+  /**
+   * Asynchronously flush the crop at several sizes into provided streams, see {@link #into(Map)}.
+   *
+   * @param outputStreams Streams to write to, keyed by maximum width and height of the bitmap written into each.
+   * @param closeWhenDone wetter or not to close provided streams once flushing is done
+   * @return {@link Future} used to cancel or wait for this request, done once every stream has been written, or failing with
+   * the first failure.
+   */
+  public Future<Void> into(@NonNull Map<Integer, OutputStream> outputStreams, boolean closeWhenDone) {
+    final int[] sizes = sizes(outputStreams);
+    final CropMetrics metrics = CropMetrics.resolve(this.metrics);
+    final CropOutput[] outputs = new CropOutput[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      outputs[i] = CropOutput.toStream(outputStreams.get(sizes[i]), closeWhenDone, metrics);
+    }
+    return flushLadder(sizes, outputs, metrics);
+  }
+
+  private Future<Void> flushLadder(int[] sizes, CropOutput[] outputs, @Nullable CropMetrics metrics) {
+    if (maxMemory > 0) {
+      throw new IllegalStateException("maxMemory(long) cannot be combined with several output sizes.");
+    }
+    final OutputSize outputSize = OutputSize.atMost(sizes[0], sizes[0]);
+    final CropSnapshot snapshot = cropView.snapshot();
+    final Callable<Bitmap> bitmapSource;
+    if (snapshot == null) {
+      bitmapSource = NO_BITMAP;
+    } else if (fromOriginal) {
+      bitmapSource = snapshot.decode(requireOriginalSource(), outputSize, cropView.getBitmapPool());
+    } else {
+      bitmapSource = snapshot.render(outputSize, cropView.getBitmapPool());
+    }
+    return SizeLadder.flush(CropMetrics.measureCrop(bitmapSource, metrics), sizes, outputs, format, quality,
+        cropView.getBitmapPool(), executor, priority);
+  }
+
+  /**
+   * @return Keys of {@code targets}, largest first.
+   */
+  private static int[] sizes(Map<Integer, ?> targets) {
+    Utils.checkNotNull(targets, "targets == null");
+    Utils.checkArg(!targets.isEmpty(), "At least one output size is required");
+    final int[] sizes = new int[targets.size()];
+    int i = 0;
+    for (Map.Entry<Integer, ?> entry : targets.entrySet()) {
+      Utils.checkArg(entry.getKey() != null && entry.getKey() > 0, "Output sizes must be > 0");
+      Utils.checkNotNull(entry.getValue(), "No target for size " + entry.getKey());
+      sizes[i++] = entry.getKey();
+    }
+    Arrays.sort(sizes);
+    for (int lo = 0, hi = sizes.length - 1; lo < hi; lo++, hi--) {
+      final int size = sizes[lo];
+      sizes[lo] = sizes[hi];
+      sizes[hi] = size;
+    }
+    return sizes;
+  }
+
+  private Callable<Bitmap> crop(@Nullable CropSnapshot snapshot, @Nullable CropMetrics metrics) {
+    if (snapshot == null) {
+      return NO_BITMAP;
+    }
+    return CropMetrics.measureCrop(fromOriginal
+        ? snapshot.decode(requireOriginalSource(), outputSize, cropView.getBitmapPool())
+        : snapshot.render(outputSize, cropView.getBitmapPool()), metrics);
+  }
+
+  private StripSource cropStrips(@Nullable CropSnapshot snapshot) {
+    Utils.checkArg(StripEncoder.supports(format), "Strip encoding does not support " + format);
+    if (snapshot == null) {
+      return NO_STRIPS;
+    }
+    return fromOriginal
+        ? snapshot.strips(requireOriginalSource(), outputSize)
+        : snapshot.strips(outputSize);
+  }
+
+  private OriginalSource requireOriginalSource() {
+    final OriginalSource source = originalSource != null ? originalSource : cropView.getOriginalSource();
+    if (source == null) {
+      throw new IllegalStateException("No original to crop from, load one using CropView.Extensions or call fromOriginal(model).");
+    }
+    return source;
   }
 }
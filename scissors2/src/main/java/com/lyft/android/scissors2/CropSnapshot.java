@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable capture of what {@link CropView} shows through its viewport: the bitmap, its orientation, scale and position, and
+ * the viewport. Bitmap coordinates are those of the bitmap shown upright.
+ * <p>
+ * Taken on the main thread, it can then be rendered from any thread regardless of further gestures or animations. Hardware
+ * bitmaps are rendered from a software copy, or decoded again from their original source if that copy fails.
+ * <p>
+ * Tasks rendering the bitmap from another thread pin it from their creation until they are done with it, see
+ * {@link #isPinned(Bitmap)}, so that pools and loaders do not recycle or reuse it in the meantime.
+ */
+class CropSnapshot {
+
+    /**
+     * Bitmaps read by background tasks, keyed by task. Tasks are held weakly so that those cancelled before running let go of
+     * their bitmap once discarded.
+     */
+    private static final Map<Object, Bitmap> PINNED = new WeakHashMap<>();
+
+    private final Bitmap bitmap;
+    private final int orientation;
+    private final Matrix transform;
+    private final int viewportWidth;
+    private final int viewportHeight;
+    private final OriginalSource originalSource;
+
+    /**
+     * @param orientation {@link Orientation} {@code bitmap} is stored in.
+     * @param transform Maps {@code bitmap} shown upright into viewport coordinates, copied.
+     * @param originalSource Source {@code bitmap} was loaded from, if known.
+     */
+    CropSnapshot(@NonNull Bitmap bitmap, int orientation, @NonNull Matrix transform, int viewportWidth, int viewportHeight,
+            @Nullable OriginalSource originalSource) {
+        this.bitmap = bitmap;
+        this.orientation = orientation;
+        this.transform = new Matrix(transform);
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.originalSource = originalSource;
+    }
+
+    int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    int getViewportHeight() {
+        return viewportHeight;
+    }
+
+    int getBitmapWidth() {
+        return Orientation.getUprightWidth(orientation, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    int getBitmapHeight() {
+        return Orientation.getUprightHeight(orientation, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /**
+     * @return Config of cropped bitmaps, matching the captured bitmap unless it cannot be drawn into.
+     */
+    Bitmap.Config getConfig() {
+        final Bitmap.Config config = bitmap.getConfig();
+        return config == null || Utils.isHardware(bitmap) ? Bitmap.Config.ARGB_8888 : config;
+    }
+
+    /**
+     * Maps the viewport into bitmap coordinates, that is the part of the bitmap visible through the viewport.
+     */
+    void mapViewportToBitmap(RectF out) {
+        final Matrix inverse = new Matrix();
+        transform.invert(inverse);
+        out.set(0, 0, viewportWidth, viewportHeight);
+        inverse.mapRect(out);
+    }
+
+    /**
+     * Draws the viewport into {@code dst}, scaled to its size.
+     */
+    Bitmap render(Bitmap dst) {
+        if (bitmap.isRecycled()) {
+            throw new IllegalStateException("Bitmap recycled while being cropped, see CropView#setImageBitmap(Bitmap, int).");
+        }
+        final Matrix matrix = new Matrix();
+        Bitmap source = bitmap;
+        boolean upright = false;
+        if (Utils.isHardware(bitmap)) {
+            source = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            if (source == null) {
+                source = decodeUpright();
+                upright = true;
+            }
+        }
+        if (!upright) {
+            Utils.applyOrientation(matrix, orientation, bitmap.getWidth(), bitmap.getHeight());
+        }
+        matrix.postConcat(transform);
+        matrix.postScale((float) dst.getWidth() / viewportWidth, (float) dst.getHeight() / viewportHeight);
+
+        try {
+            final Canvas canvas = new Canvas(dst);
+            canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * @return The whole bitmap decoded again from its original source, upright, for when a hardware bitmap cannot be read back.
+     */
+    private Bitmap decodeUpright() {
+        if (originalSource == null) {
+            throw new IllegalStateException("Unable to read back hardware bitmap.");
+        }
+        final int width = getBitmapWidth();
+        final int height = getBitmapHeight();
+        try {
+            return originalSource.decodeRegion(new RectF(0, 0, width, height), width, height,
+                    OutputSize.exactly(width, height), null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read back hardware bitmap.", e);
+        }
+    }
+
+    /**
+     * @return A task drawing the viewport into a bitmap of {@code outputSize}, taken from {@code pool} if any. The bitmap is
+     * pinned until the task has run.
+     */
+    Callable<Bitmap> render(final OutputSize outputSize, @Nullable final BitmapPool pool) {
+        final Callable<Bitmap> task = new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                try {
+                    final Rect output = outputSize.resolve(viewportWidth, viewportHeight);
+                    return render(Utils.obtainBitmap(pool, output.width(), output.height(), getConfig()));
+                } finally {
+                    unpin(this);
+                }
+            }
+        };
+        pin(task, bitmap);
+        return task;
+    }
+
+    /**
+     * @return A task decoding the viewport from {@code source} at full resolution or scaled to {@code outputSize}, which does not
+     * read the bitmap.
+     */
+    Callable<Bitmap> decode(final OriginalSource source, final OutputSize outputSize, @Nullable final BitmapPool pool) {
+        final RectF region = new RectF();
+        mapViewportToBitmap(region);
+        final int bitmapWidth = getBitmapWidth();
+        final int bitmapHeight = getBitmapHeight();
+        return new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws Exception {
+                return source.decodeRegion(region, bitmapWidth, bitmapHeight, outputSize, pool);
+            }
+        };
+    }
+
+    /**
+     * @return Strips of the viewport scaled to {@code outputSize}. The bitmap is pinned until they are closed.
+     */
+    StripSource strips(OutputSize outputSize) {
+        final Rect output = outputSize.resolve(viewportWidth, viewportHeight);
+        if (Utils.isHardware(bitmap) && originalSource != null) {
+            // Decoding the original strip by strip keeps memory bounded, unlike a software copy
+            return strips(originalSource, OutputSize.exactly(output.width(), output.height()));
+        }
+
+        final Matrix matrix = new Matrix();
+        Utils.applyOrientation(matrix, orientation, bitmap.getWidth(), bitmap.getHeight());
+        matrix.postConcat(transform);
+        matrix.postScale((float) output.width() / viewportWidth, (float) output.height() / viewportHeight);
+        final StripSource strips = StripSource.of(bitmap, matrix, output.width(), output.height());
+        pin(strips, bitmap);
+        return strips;
+    }
+
+    /**
+     * @return Strips of the viewport decoded from {@code source} at full resolution or scaled to {@code outputSize}.
+     */
+    StripSource strips(OriginalSource source, OutputSize outputSize) {
+        final RectF region = new RectF();
+        mapViewportToBitmap(region);
+        return StripSource.of(source, region, getBitmapWidth(), getBitmapHeight(), outputSize);
+    }
+
+    /**
+     * @return Whether {@code bitmap} is read by a background task rendering a snapshot, so that it must not be recycled nor
+     * reused yet.
+     */
+    static boolean isPinned(Bitmap bitmap) {
+        synchronized (PINNED) {
+            return PINNED.containsValue(bitmap);
+        }
+    }
+
+    static void pin(Object task, Bitmap bitmap) {
+        synchronized (PINNED) {
+            PINNED.put(task, bitmap);
+        }
+    }
+
+    static void unpin(Object task) {
+        synchronized (PINNED) {
+            PINNED.remove(task);
+        }
+    }
+}
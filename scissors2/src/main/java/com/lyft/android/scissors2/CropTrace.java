@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in {@link Trace} sections around drawing, touch handling, loading and cropping, so that scissors work shows up by name in
+ * systrace and Perfetto captures. Background jobs also get an async slice from the moment they are submitted to the moment they
+ * complete, showing how long they waited for a thread.
+ * <p>
+ * Tracing is only available as of API 18, async slices go through hidden methods before API 29. It is off by default and then
+ * costs a single check per section.
+ */
+public final class CropTrace {
+
+    private static final String TAG = "scissors.CropTrace";
+    private static final AtomicInteger COOKIES = new AtomicInteger();
+
+    private static volatile boolean enabled;
+
+    private CropTrace() {
+    }
+
+    /**
+     * Enables or disables tracing, best done before any view is drawn or request made so that sections stay balanced.
+     */
+    public static void setEnabled(boolean enabled) {
+        // Build is only read once enabled, so that submitting jobs works off-device
+        CropTrace.enabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Begins a section on the calling thread, ended by the matching {@link #end()} on the same thread.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void begin(String name) {
+        if (enabled) {
+            Trace.beginSection(name);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void end() {
+        if (enabled) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begins an async slice, which may end on another thread.
+     *
+     * @return Cookie to end the slice with, see {@link #endAsync(String, int)}, or 0 if not traced.
+     */
+    static int beginAsync(String name) {
+        if (!enabled || AsyncTrace.BEGIN == null) {
+            return 0;
+        }
+        int cookie;
+        do {
+            cookie = COOKIES.incrementAndGet();
+        } while (cookie == 0);
+        AsyncTrace.invoke(AsyncTrace.BEGIN, name, cookie);
+        return cookie;
+    }
+
+    static void endAsync(String name, int cookie) {
+        if (cookie != 0) {
+            AsyncTrace.invoke(AsyncTrace.END, name, cookie);
+        }
+    }
+
+    /**
+     * Async slice methods, public as of API 29 and hidden before, only looked up once tracing gets used.
+     */
+    private static class AsyncTrace {
+
+        static final Method BEGIN;
+        static final Method END;
+        static final long TAG_APP;
+
+        static {
+            Method begin = null;
+            Method end = null;
+            long tagApp = 0;
+            try {
+                if (Build.VERSION.SDK_INT >= 29) {
+                    begin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                    end = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+                } else {
+                    tagApp = Trace.class.getField("TRACE_TAG_APP").getLong(null);
+                    begin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                    end = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+                }
+            } catch (Exception e) {
+                begin = null;
+                end = null;
+                if (BuildConfig.DEBUG) {
+                    Log.e(TAG, "Async trace slices unavailable.", e);
+                }
+            }
+            BEGIN = begin;
+            END = end;
+            TAG_APP = tagApp;
+        }
+
+        static void invoke(Method method, String name, int cookie) {
+            try {
+                if (Build.VERSION.SDK_INT >= 29) {
+                    method.invoke(null, name, cookie);
+                } else {
+                    method.invoke(null, TAG_APP, name, cookie);
+                }
+            } catch (Exception e) {
+                if (BuildConfig.DEBUG) {
+                    Log.e(TAG, "Unable to trace " + name, e);
+                }
+            }
+        }
+    }
+}
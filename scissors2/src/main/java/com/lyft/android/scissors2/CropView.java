@@ -15,6 +15,7 @@
  */
 package com.lyft.android.scissors2;
 
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Fragment;
 import android.content.Context;
@@ -22,6 +23,7 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
@@ -29,6 +31,7 @@ import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
@@ -36,7 +39,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewGroupOverlay;
 import android.widget.ImageView;
+import com.lyft.android.scissors2.geometry.CropState;
+import com.lyft.android.scissors2.geometry.Orientation;
 import java.io.File;
 import java.io.OutputStream;
 import java.lang.annotation.Retention;
@@ -54,8 +62,19 @@ public class CropView extends ImageView {
     private Paint bitmapPaint = new Paint();
 
     private Bitmap bitmap;
+    private int orientation = Orientation.NORMAL;
+    private OriginalSource originalSource;
+    private BitmapPool bitmapPool = new LruBitmapPool(CropViewConfig.DEFAULT_BITMAP_POOL_SIZE);
+    private boolean defaultBitmapPool = true;
     private Matrix transform = new Matrix();
+    private TileLayer tileLayer = new TileLayer(this, Utils.defaultExecutor(), CropViewConfig.DEFAULT_TILE_CACHE_SIZE);
+    private final Matrix uprightTransform = new Matrix();
+    private final RectF viewportRect = new RectF();
     private Extensions extensions;
+    private GestureTrace gestureTrace;
+    private CropMetrics loadMetrics;
+    private BitmapLoader loadLoader;
+    private long loadStartNanos;
 
     /** Corresponds to the values in {@link com.lyft.android.scissors2.R.attr#cropviewShape} */
     @Retention(RetentionPolicy.SOURCE)
@@ -66,10 +85,43 @@ public class CropView extends ImageView {
         int OVAL = 1;
     }
 
+    /** Corresponds to the values in {@link com.lyft.android.scissors2.R.attr#cropviewDisplayConfig} */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ DisplayConfig.SOURCE, DisplayConfig.LOW_MEMORY, DisplayConfig.HARDWARE })
+    public @interface DisplayConfig {
+
+        /** Display bitmaps as loaded. */
+        int SOURCE = 0;
+        /** Display opaque bitmaps as {@link Bitmap.Config#RGB_565}, halving their memory. */
+        int LOW_MEMORY = 1;
+        /** Display bitmaps as hardware bitmaps as of API 26, keeping them in graphics memory only, else as {@link #LOW_MEMORY}. */
+        int HARDWARE = 2;
+    }
+
+    /** Corresponds to the values in {@link com.lyft.android.scissors2.R.attr#cropviewRenderMode} */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ RenderMode.DIRECT, RenderMode.LAYERED })
+    public @interface RenderMode {
+
+        /** Draw the bitmap and the overlay together on every frame. */
+        int DIRECT = 0;
+        /**
+         * As of API 18 and once attached to a parent, draw the bitmap, its tiles and the overlay from views of their own laid
+         * out over this view in the overlay of the parent. Pan and zoom frames move the bitmap by its translation and scale and
+         * draw the tiles again, but neither draw this view nor record the bitmap or rasterize the overlay again. The layers
+         * follow the bounds and visibility of this view but not its own transformation, and are drawn above its siblings.
+         * Else as {@link #DIRECT}.
+         */
+        int LAYERED = 1;
+    }
+
     @Shape
     private int shape = Shape.RECTANGLE;
-    private Path ovalPath;
-    private RectF ovalRect;
+    private final Path overlayPath = new Path();
+    private final RectF overlayRect = new RectF();
+    private boolean overlayDirty = true;
+    private Layers layers;
+    private int transformRevision = -1;
 
     public CropView(Context context) {
         super(context);
@@ -93,6 +145,7 @@ public class CropView extends ImageView {
 
         // We need anti-aliased Paint to smooth the curved edges
         viewportPaint.setFlags(viewportPaint.getFlags() | Paint.ANTI_ALIAS_FLAG);
+        setRenderMode(config.renderMode());
     }
 
     @Override
@@ -103,90 +156,114 @@ public class CropView extends ImageView {
             return;
         }
 
-        drawBitmap(canvas);
-        if (shape == Shape.RECTANGLE) {
-            drawSquareOverlay(canvas);
-        } else {
-            drawOvalOverlay(canvas);
+        CropTrace.begin("CropView.onDraw");
+        try {
+            if (layers != null && layers.isAttached()) {
+                // Redrawn for anything but a move, which the layers pick up
+                layers.update();
+                layers.invalidateTiles();
+                return;
+            }
+            drawBitmap(canvas);
+            drawTiles(canvas);
+            drawOverlay(canvas);
+        } finally {
+            CropTrace.end();
         }
     }
 
     private void drawBitmap(Canvas canvas) {
+        CropTrace.begin("CropView.drawBitmap");
+        try {
+            updateTransforms();
+            bitmapPaint.setFilterBitmap(!config.adaptiveQuality() || !touchManager.isMoving());
+            canvas.drawBitmap(bitmap, transform, bitmapPaint);
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    /**
+     * Computes the bitmap transforms again only once the bitmap moved.
+     */
+    private void updateTransforms() {
+        final int revision = touchManager.getRevision();
+        if (revision == transformRevision) {
+            return;
+        }
         transform.reset();
         touchManager.applyPositioningAndScale(transform);
-
-        canvas.drawBitmap(bitmap, transform, bitmapPaint);
+        touchManager.applyUprightPositioningAndScale(uprightTransform);
+        transformRevision = revision;
     }
 
-    private void drawSquareOverlay(Canvas canvas) {
+    private void drawTiles(Canvas canvas) {
+        if (tileLayer == null) {
+            return;
+        }
         final int viewportWidth = touchManager.getViewportWidth();
         final int viewportHeight = touchManager.getViewportHeight();
         final int left = (getWidth() - viewportWidth) / 2;
         final int top = (getHeight() - viewportHeight) / 2;
+        viewportRect.set(left, top, left + viewportWidth, top + viewportHeight);
 
-        canvas.drawRect(0, top, left, getHeight() - top, viewportPaint); // left
-        canvas.drawRect(0, 0, getWidth(), top, viewportPaint); // top
-        canvas.drawRect(getWidth() - left, top, getWidth(), getHeight() - top, viewportPaint); // right
-        canvas.drawRect(0, getHeight() - top, getWidth(), getHeight(), viewportPaint); // bottom
+        tileLayer.draw(canvas, uprightTransform, touchManager.getScale(), viewportRect);
     }
 
-    private void drawOvalOverlay(Canvas canvas) {
-        if (ovalRect == null) {
-            ovalRect = new RectF();
-        }
-        if (ovalPath == null) {
-            ovalPath = new Path();
+    private void drawOverlay(Canvas canvas) {
+        CropTrace.begin("CropView.drawOverlay");
+        try {
+            if (overlayDirty) {
+                buildOverlay();
+            }
+            canvas.drawPath(overlayPath, viewportPaint);
+        } finally {
+            CropTrace.end();
         }
+    }
 
+    /**
+     * Builds the overlay once per viewport as the whole view minus the viewport, so that the path is drawn as is every frame
+     * and only tessellated again when the viewport changes.
+     */
+    private void buildOverlay() {
         final int viewportWidth = touchManager.getViewportWidth();
         final int viewportHeight = touchManager.getViewportHeight();
         final int left = (getWidth() - viewportWidth) / 2;
         final int top = (getHeight() - viewportHeight) / 2;
-        final int right = getWidth() - left;
-        final int bottom = getHeight() - top;
-        ovalRect.left = left;
-        ovalRect.top = top;
-        ovalRect.right = right;
-        ovalRect.bottom = bottom;
-
-        // top left arc
-        ovalPath.reset();
-        ovalPath.moveTo(left, getHeight() / 2); // middle of the left side of the circle
-        ovalPath.arcTo(ovalRect, 180, 90, false); // draw arc to top
-        ovalPath.lineTo(left, top); // move to top-left corner
-        ovalPath.lineTo(left, getHeight() / 2); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // top right arc
-        ovalPath.reset();
-        ovalPath.moveTo(getWidth() / 2, top); // middle of the top side of the circle
-        ovalPath.arcTo(ovalRect, 270, 90, false); // draw arc to the right
-        ovalPath.lineTo(right, top); // move to top-right corner
-        ovalPath.lineTo(getWidth() / 2, top); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // bottom right arc
-        ovalPath.reset();
-        ovalPath.moveTo(right, getHeight() / 2); // middle of the right side of the circle
-        ovalPath.arcTo(ovalRect, 0, 90, false); // draw arc to the bottom
-        ovalPath.lineTo(right, bottom); // move to bottom-right corner
-        ovalPath.lineTo(right, getHeight() / 2); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // bottom left arc
-        ovalPath.reset();
-        ovalPath.moveTo(getWidth() / 2, bottom); // middle of the bottom side of the circle
-        ovalPath.arcTo(ovalRect, 90, 90, false); // draw arc to the left
-        ovalPath.lineTo(left, bottom); // move to bottom-left corner
-        ovalPath.lineTo(getWidth() / 2, bottom); // move back to origin
-        ovalPath.close();
-        canvas.drawPath(ovalPath, viewportPaint);
-
-        // Draw the square overlay as well
-        drawSquareOverlay(canvas);
+        overlayRect.set(left, top, getWidth() - left, getHeight() - top);
+
+        overlayPath.reset();
+        overlayPath.setFillType(Path.FillType.EVEN_ODD);
+        overlayPath.addRect(0, 0, getWidth(), getHeight(), Path.Direction.CW);
+        if (shape == Shape.RECTANGLE) {
+            overlayPath.addRect(overlayRect, Path.Direction.CW);
+        } else {
+            overlayPath.addOval(overlayRect, Path.Direction.CW);
+        }
+        overlayDirty = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (layers != null) {
+            layers.attach();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (layers != null) {
+            layers.detach();
+        }
+        if (defaultBitmapPool) {
+            bitmapPool.clear();
+        }
+        if (tileLayer != null) {
+            tileLayer.trim();
+        }
     }
 
     @Override
@@ -195,6 +272,22 @@ public class CropView extends ImageView {
         resetTouchManager();
     }
 
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (layers != null) {
+            layers.layout();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (layers != null) {
+            layers.updateVisibility();
+        }
+    }
+
     /**
      * Sets the color of the viewport overlay
      *
@@ -203,6 +296,7 @@ public class CropView extends ImageView {
     public void setViewportOverlayColor(@ColorInt int viewportOverlayColor) {
         viewportPaint.setColor(viewportOverlayColor);
         config.setViewportOverlayColor(viewportOverlayColor);
+        invalidateOverlay();
     }
 
     /**
@@ -216,6 +310,79 @@ public class CropView extends ImageView {
         invalidate();
     }
 
+    /**
+     * Sets the config of bitmaps loaded through {@link Extensions}, applied from the next load. Cropping switches to a software
+     * copy of the bitmap whenever it cannot be drawn in software.
+     *
+     * @param displayConfig One of {@link DisplayConfig}, defaults to {@link DisplayConfig#SOURCE}.
+     */
+    public void setDisplayConfig(@DisplayConfig int displayConfig) {
+        config.setDisplayConfig(displayConfig);
+    }
+
+    @DisplayConfig
+    public int getDisplayConfig() {
+        return config.displayConfig();
+    }
+
+    /**
+     * Sets how the bitmap and the overlay are drawn.
+     *
+     * @param renderMode One of {@link RenderMode}, defaults to {@link RenderMode#DIRECT}.
+     */
+    public void setRenderMode(@RenderMode int renderMode) {
+        config.setRenderMode(renderMode);
+        final boolean layered = renderMode == RenderMode.LAYERED
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        if (layered == (layers != null)) {
+            return;
+        }
+        if (layered) {
+            layers = new Layers();
+            if (getWindowToken() != null) {
+                layers.attach();
+            }
+        } else {
+            layers.detach();
+            layers = null;
+        }
+        invalidate();
+    }
+
+    @RenderMode
+    public int getRenderMode() {
+        return config.renderMode();
+    }
+
+    /**
+     * Sets whether to draw the bitmap without filtering while it is dragged, scaled, flung or zoomed, which is cheaper on slow
+     * devices. It is drawn filtered again as soon as it settles.
+     *
+     * @param adaptiveQuality Defaults to <code>false</code>, always filtering.
+     */
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        config.setAdaptiveQuality(adaptiveQuality);
+        invalidate();
+    }
+
+    public boolean isAdaptiveQuality() {
+        return config.adaptiveQuality();
+    }
+
+    private void invalidateOverlay() {
+        if (layers != null) {
+            layers.invalidateOverlay();
+        }
+    }
+
+    /**
+     * @return The view drawing the bitmap in {@link RenderMode#LAYERED} while attached, else <code>null</code>.
+     */
+    @Nullable
+    View bitmapLayer() {
+        return layers != null && layers.isAttached() ? layers.bitmapLayer : null;
+    }
+
     /**
      * Returns the native aspect ratio of the image.
      *
@@ -223,7 +390,11 @@ public class CropView extends ImageView {
      */
     public float getImageRatio() {
         Bitmap bitmap = getImageBitmap();
-        return bitmap != null ? (float) bitmap.getWidth() / (float) bitmap.getHeight() : 0f;
+        if (bitmap == null) {
+            return 0f;
+        }
+        return (float) Orientation.getUprightWidth(orientation, bitmap.getWidth(), bitmap.getHeight())
+                / (float) Orientation.getUprightHeight(orientation, bitmap.getWidth(), bitmap.getHeight());
     }
 
     /**
@@ -280,11 +451,42 @@ public class CropView extends ImageView {
 
     @Override
     public void setImageBitmap(@Nullable Bitmap bitmap) {
+        setImageBitmap(bitmap, Orientation.NORMAL);
+    }
+
+    /**
+     * Sets a bitmap stored in given EXIF orientation, which is then shown and cropped upright without copying its pixels.
+     * <p>
+     * Background crops read the bitmap they were requested on until they are done, even once it is replaced. Rather than
+     * recycling a replaced bitmap, leave it to the garbage collector or hand it to {@link #getBitmapPool()}, which leaves it
+     * alone while crops in progress still read it.
+     *
+     * @param orientation One of {@code ExifInterface.ORIENTATION_*}, undefined orientations are treated as normal.
+     */
+    public void setImageBitmap(@Nullable Bitmap bitmap, int orientation) {
+        if (loadMetrics != null && bitmap != null) {
+            // Loaders may clear the bitmap first, only the loaded one ends the load
+            CropMetrics.report(loadMetrics, CropMetrics.Stage.LOAD, System.nanoTime() - loadStartNanos, bitmap, -1, loadLoader);
+            loadMetrics = null;
+            loadLoader = null;
+        }
         this.bitmap = bitmap;
+        this.orientation = Orientation.sanitize(orientation);
+        resetTileLayer();
         resetTouchManager();
+        if (layers != null) {
+            layers.layoutBitmap();
+        }
         invalidate();
     }
 
+    /**
+     * @return EXIF orientation of the current bitmap, see {@link #setImageBitmap(Bitmap, int)}.
+     */
+    public int getImageOrientation() {
+        return orientation;
+    }
+
     /**
      * @return Current working Bitmap or <code>null</code> if none has been set yet.
      */
@@ -293,11 +495,74 @@ public class CropView extends ImageView {
         return bitmap;
     }
 
+    /**
+     * @return Original source of the current bitmap, as given to the last {@link LoadRequest}, or <code>null</code> if unknown.
+     */
+    @Nullable
+    OriginalSource getOriginalSource() {
+        return originalSource;
+    }
+
+    void setOriginalSource(@Nullable OriginalSource originalSource) {
+        this.originalSource = originalSource;
+    }
+
+    /**
+     * Starts measuring a load by {@code loader}, ended by the next bitmap set.
+     *
+     * @param metrics Listeners to tell once loaded, or <code>null</code> not to measure it.
+     */
+    void beginLoad(BitmapLoader loader, @Nullable CropMetrics metrics) {
+        loadMetrics = metrics;
+        loadLoader = metrics != null ? loader : null;
+        loadStartNanos = metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return Listeners of the load in progress, see {@link LoadRequest#metrics(CropMetrics)}.
+     */
+    @Nullable
+    CropMetrics getLoadMetrics() {
+        return loadMetrics;
+    }
+
+    /**
+     * Sets the number of bytes held by tiles of the original, decoded to keep the image sharp once zoomed past the resolution of
+     * the displayed bitmap. Tiles are only available for images loaded through {@link Extensions}. Defaults to
+     * {@value CropViewConfig#DEFAULT_TILE_CACHE_SIZE} bytes, cleared when detached from window.
+     *
+     * @param maxSize Maximum number of bytes, or 0 to disable tiles.
+     */
+    public void setTileCacheSize(long maxSize) {
+        Utils.checkArg(maxSize >= 0, "maxSize must be >= 0");
+        if (tileLayer != null) {
+            tileLayer.clear();
+        }
+        tileLayer = maxSize > 0 ? new TileLayer(this, Utils.defaultExecutor(), maxSize) : null;
+        resetTileLayer();
+        invalidate();
+    }
+
+    private void resetTileLayer() {
+        if (tileLayer == null) {
+            return;
+        }
+        if (bitmap == null) {
+            tileLayer.setSource(null, 0, 0);
+            return;
+        }
+        tileLayer.setSource(originalSource, Orientation.getUprightWidth(orientation, bitmap.getWidth(), bitmap.getHeight()),
+                Orientation.getUprightHeight(orientation, bitmap.getWidth(), bitmap.getHeight()));
+    }
+
     private void resetTouchManager() {
         final boolean invalidBitmap = bitmap == null;
         final int bitmapWidth = invalidBitmap ? 0 : bitmap.getWidth();
         final int bitmapHeight = invalidBitmap ? 0 : bitmap.getHeight();
-        touchManager.resetFor(bitmapWidth, bitmapHeight, getWidth(), getHeight());
+        touchManager.resetFor(bitmapWidth, bitmapHeight, orientation, getWidth(), getHeight());
+        // Size, padding and ratio changes all go through here
+        overlayDirty = true;
+        invalidateOverlay();
     }
 
     @Override
@@ -308,8 +573,11 @@ public class CropView extends ImageView {
             return result;
         }
 
+        if (gestureTrace != null) {
+            gestureTrace.add(event);
+        }
+        // Redraws only when the bitmap moves
         touchManager.onEvent(event);
-        invalidate();
         return true;
     }
 
@@ -321,26 +589,147 @@ public class CropView extends ImageView {
      */
     @Nullable
     public Bitmap crop() {
+        return crop(touchManager.getViewportWidth(), touchManager.getViewportHeight());
+    }
+
+    /**
+     * Performs synchronous image cropping based on configuration, scaling the viewport to the given size as part of the crop.
+     * The viewport is stretched if its aspect ratio differs from {@code width / height}.
+     *
+     * @param width Width of the cropped {@link Bitmap}, must be &gt; 0.
+     * @param height Height of the cropped {@link Bitmap}, must be &gt; 0.
+     * @return A {@link Bitmap} cropped based on viewport and user panning and zooming or <code>null</code> if no {@link Bitmap} has been
+     * provided.
+     */
+    @Nullable
+    public Bitmap crop(int width, int height) {
+        final CropSnapshot snapshot = snapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        Utils.checkArg(width > 0 && height > 0, "width and height must be > 0");
+
+        final CropMetrics metrics = CropMetrics.getGlobal();
+        final long start = metrics != null ? System.nanoTime() : 0;
+        CropTrace.begin("CropView.crop");
+        try {
+            return reportCrop(snapshot.render(Utils.obtainBitmap(bitmapPool, width, height, snapshot.getConfig())), metrics,
+                    start);
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    /**
+     * Performs synchronous image cropping based on configuration, into {@code reuse} instead of a new {@link Bitmap} when possible.
+     *
+     * @param reuse A mutable {@link Bitmap} matching viewport size, which may also be reconfigured to it as of API 19.
+     * @return A {@link Bitmap} cropped based on viewport and user panning and zooming, either {@code reuse} or a new one, or
+     * <code>null</code> if no {@link Bitmap} has been provided.
+     */
+    @Nullable
+    public Bitmap crop(@Nullable Bitmap reuse) {
+        final CropSnapshot snapshot = snapshot();
+        if (snapshot == null) {
+            return null;
+        }
+
+        final CropMetrics metrics = CropMetrics.getGlobal();
+        final long start = metrics != null ? System.nanoTime() : 0;
+        final int viewportWidth = snapshot.getViewportWidth();
+        final int viewportHeight = snapshot.getViewportHeight();
+        final Bitmap.Config config = snapshot.getConfig();
+        CropTrace.begin("CropView.crop");
+        try {
+            if (Utils.prepareForReuse(reuse, viewportWidth, viewportHeight, config)) {
+                reuse.eraseColor(Color.TRANSPARENT);
+                return reportCrop(snapshot.render(reuse), metrics, start);
+            }
+            return reportCrop(snapshot.render(Utils.obtainBitmap(bitmapPool, viewportWidth, viewportHeight, config)),
+                    metrics, start);
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    private static Bitmap reportCrop(Bitmap cropped, @Nullable CropMetrics metrics, long startNanos) {
+        if (metrics != null) {
+            CropMetrics.report(metrics, CropMetrics.Stage.CROP, System.nanoTime() - startNanos, cropped, -1, null);
+        }
+        return cropped;
+    }
+
+    /**
+     * Captures the bitmap as currently shown through the viewport, so that it can be cropped from another thread while the user
+     * keeps interacting with this view.
+     *
+     * @return An immutable snapshot of the viewport or <code>null</code> if no {@link Bitmap} has been provided.
+     */
+    @Nullable
+    CropSnapshot snapshot() {
         if (bitmap == null) {
             return null;
         }
 
-        final Bitmap src = bitmap;
-        final Bitmap.Config srcConfig = src.getConfig();
-        final Bitmap.Config config = srcConfig == null ? Bitmap.Config.ARGB_8888 : srcConfig;
-        final int viewportHeight = touchManager.getViewportHeight();
-        final int viewportWidth = touchManager.getViewportWidth();
+        final Matrix matrix = new Matrix();
+        touchManager.applyViewportTransform(matrix);
+        return new CropSnapshot(bitmap, orientation, matrix, touchManager.getViewportWidth(),
+                touchManager.getViewportHeight(), originalSource);
+    }
 
-        final Bitmap dst = Bitmap.createBitmap(viewportWidth, viewportHeight, config);
+    /**
+     * Captures the bitmap as it would be shown through a viewport of another aspect ratio, keeping the current scale and the
+     * bitmap point at the center of the viewport as far as that viewport allows.
+     *
+     * @param viewportRatio Aspect ratio of the captured viewport, or 0 to match the bitmap.
+     * @return An immutable snapshot of that viewport or <code>null</code> if no {@link Bitmap} has been provided.
+     */
+    @Nullable
+    CropSnapshot snapshot(float viewportRatio) {
+        if (bitmap == null) {
+            return null;
+        }
 
-        Canvas canvas = new Canvas(dst);
-        final int left = (getRight() - viewportWidth) / 2;
-        final int top = (getBottom() - viewportHeight) / 2;
-        canvas.translate(-left, -top);
+        final CropState state = touchManager.copyState();
+        state.changeViewportRatio(viewportRatio);
+        final Matrix matrix = new Matrix();
+        TouchManager.applyViewportTransform(state, matrix);
+        return new CropSnapshot(bitmap, orientation, matrix, state.getViewportWidth(), state.getViewportHeight(),
+                originalSource);
+    }
+
+    /**
+     * Sets the pool cropped bitmaps are taken from, and returned to once {@link CropRequest}s are done with them. Defaults to a
+     * {@link LruBitmapPool} of {@value CropViewConfig#DEFAULT_BITMAP_POOL_SIZE} bytes, cleared when detached from window.
+     *
+     * @param bitmapPool Pool to use or <code>null</code> to always allocate new bitmaps.
+     */
+    public void setBitmapPool(@Nullable BitmapPool bitmapPool) {
+        if (defaultBitmapPool) {
+            this.bitmapPool.clear();
+        }
+        this.bitmapPool = bitmapPool;
+        this.defaultBitmapPool = false;
+    }
 
-        drawBitmap(canvas);
+    @Nullable
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Records every touch event handled from now on into {@code gestureTrace}, so that gestures can be written to a file with
+     * {@link GestureTrace#writeTo(java.io.OutputStream)} and replayed, for instance to reproduce janky gestures.
+     *
+     * @param gestureTrace Trace to record into or <code>null</code> to stop recording.
+     */
+    public void setGestureTrace(@Nullable GestureTrace gestureTrace) {
+        this.gestureTrace = gestureTrace;
+    }
 
-        return dst;
+    @Nullable
+    public GestureTrace getGestureTrace() {
+        return gestureTrace;
     }
 
     /**
@@ -399,6 +788,7 @@ public class CropView extends ImageView {
          * @param model Model used by {@link BitmapLoader} to load desired {@link Bitmap}
          * @see PicassoBitmapLoader
          * @see GlideBitmapLoader
+         * @see NativeBitmapLoader
          */
         public void load(@Nullable Object model) {
             new LoadRequest(cropView)
@@ -420,6 +810,7 @@ public class CropView extends ImageView {
             PICASSO,
             GLIDE,
             UIL,
+            NATIVE,
             CLASS_LOOKUP
         }
 
@@ -449,6 +840,21 @@ public class CropView extends ImageView {
             return new CropRequest(cropView);
         }
 
+        /**
+         * Perform an asynchronous crop request through several viewports at once, for instance a square avatar and a wide banner,
+         * rendered from a single decode in a single background job.
+         *
+         * @param viewportRatios Aspect ratio of each viewport, or 0 to match the image.
+         * @return {@link MultiCropRequest} used to chain a configure cropping request, you must call either one of:
+         * <ul>
+         * <li>{@link MultiCropRequest#into(File...)}</li>
+         * <li>{@link MultiCropRequest#into(OutputStream[], boolean)}</li>
+         * </ul>
+         */
+        public MultiCropRequest multiCrop(@NonNull float... viewportRatios) {
+            return new MultiCropRequest(cropView, viewportRatios);
+        }
+
         /**
          * Perform a pick image request using {@link Activity#startActivityForResult(Intent, int)}.
          */
@@ -463,4 +869,158 @@ public class CropView extends ImageView {
             CropViewExtensions.pickUsing(fragment, requestCode);
         }
     }
+
+    /**
+     * The views drawing this view in {@link RenderMode#LAYERED}, added to the overlay of its parent and laid out over it. The
+     * bitmap is recorded once in its orientation and at its size, then positioned and scaled by the properties of its view.
+     * The overlay is kept in a hardware layer, rasterized again only once the viewport, its shape or its color change.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private class Layers implements Runnable {
+
+        private final Matrix orientationTransform = new Matrix();
+        private final ViewGroup frame = new ViewGroup(getContext()) {
+            @Override
+            protected void onLayout(boolean changed, int l, int t, int r, int b) {
+                // Overlays are never laid out, children are laid out along with this view instead
+            }
+        };
+        private final View bitmapLayer = new View(getContext()) {
+            @Override
+            protected void onDraw(Canvas canvas) {
+                if (bitmap != null) {
+                    canvas.drawBitmap(bitmap, orientationTransform, bitmapPaint);
+                }
+            }
+        };
+        private final View tilesLayer = new View(getContext()) {
+            @Override
+            protected void onDraw(Canvas canvas) {
+                if (bitmap != null) {
+                    drawTiles(canvas);
+                }
+            }
+        };
+        private final View overlayLayer = new View(getContext()) {
+            @Override
+            protected void onDraw(Canvas canvas) {
+                if (bitmap != null) {
+                    drawOverlay(canvas);
+                }
+            }
+        };
+
+        private ViewGroupOverlay parentOverlay;
+        private int drawnRevision = -1;
+
+        Layers() {
+            bitmapLayer.setPivotX(0);
+            bitmapLayer.setPivotY(0);
+            overlayLayer.setLayerType(LAYER_TYPE_HARDWARE, null);
+            frame.addView(bitmapLayer);
+            frame.addView(tilesLayer);
+            frame.addView(overlayLayer);
+        }
+
+        /**
+         * Adds the layers to the overlay of the parent, if any, and takes over from redrawing this view on moves.
+         */
+        void attach() {
+            if (parentOverlay != null || !(getParent() instanceof ViewGroup)) {
+                return;
+            }
+            parentOverlay = ((ViewGroup) getParent()).getOverlay();
+            parentOverlay.add(frame);
+            touchManager.setMoveListener(this);
+            layout();
+            layoutBitmap();
+            updateVisibility();
+        }
+
+        void detach() {
+            if (parentOverlay == null) {
+                return;
+            }
+            parentOverlay.remove(frame);
+            parentOverlay = null;
+            touchManager.setMoveListener(null);
+        }
+
+        boolean isAttached() {
+            return parentOverlay != null;
+        }
+
+        void layout() {
+            if (!isAttached()) {
+                return;
+            }
+            frame.layout(getLeft(), getTop(), getRight(), getBottom());
+            tilesLayer.layout(0, 0, getWidth(), getHeight());
+            overlayLayer.layout(0, 0, getWidth(), getHeight());
+        }
+
+        /**
+         * Records the bitmap again, once replaced.
+         */
+        void layoutBitmap() {
+            if (!isAttached()) {
+                return;
+            }
+            orientationTransform.reset();
+            if (bitmap != null) {
+                Utils.applyOrientation(orientationTransform, orientation, bitmap.getWidth(), bitmap.getHeight());
+                bitmapLayer.layout(0, 0, Orientation.getUprightWidth(orientation, bitmap.getWidth(), bitmap.getHeight()),
+                        Orientation.getUprightHeight(orientation, bitmap.getWidth(), bitmap.getHeight()));
+            } else {
+                bitmapLayer.layout(0, 0, 0, 0);
+            }
+            bitmapLayer.invalidate();
+            drawnRevision = -1;
+            update();
+        }
+
+        void updateVisibility() {
+            frame.setVisibility(isShown() ? VISIBLE : INVISIBLE);
+        }
+
+        /**
+         * Moves the bitmap to its current position and scale, and records it again only if its quality changed.
+         */
+        void update() {
+            updateTransforms();
+            final int revision = touchManager.getRevision();
+            if (revision != drawnRevision) {
+                final float scale = touchManager.getScale();
+                bitmapLayer.setScaleX(scale);
+                bitmapLayer.setScaleY(scale);
+                bitmapLayer.setTranslationX(touchManager.getPositionX() - scale * bitmapLayer.getWidth() / 2f);
+                bitmapLayer.setTranslationY(touchManager.getPositionY() - scale * bitmapLayer.getHeight() / 2f);
+                drawnRevision = revision;
+            }
+            final boolean filter = !config.adaptiveQuality() || !touchManager.isMoving();
+            if (bitmapPaint.isFilterBitmap() != filter) {
+                bitmapPaint.setFilterBitmap(filter);
+                bitmapLayer.invalidate();
+            }
+        }
+
+        void invalidateTiles() {
+            if (tileLayer != null) {
+                tilesLayer.invalidate();
+            }
+        }
+
+        void invalidateOverlay() {
+            overlayLayer.invalidate();
+        }
+
+        /**
+         * Called by {@link TouchManager} whenever the bitmap moves.
+         */
+        @Override
+        public void run() {
+            update();
+            invalidateTiles();
+        }
+    }
 }
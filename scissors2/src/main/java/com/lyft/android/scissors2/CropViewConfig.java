@@ -28,6 +28,11 @@ class CropViewConfig {
     public static final int DEFAULT_VIEWPORT_OVERLAY_PADDING = 0;
     public static final int DEFAULT_VIEWPORT_OVERLAY_COLOR = 0xC8000000; // Black with 200 alpha
     public static final int DEFAULT_SHAPE = CropView.Shape.RECTANGLE;
+    public static final long DEFAULT_BITMAP_POOL_SIZE = 8 * 1024 * 1024;
+    public static final long DEFAULT_TILE_CACHE_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_DISPLAY_CONFIG = CropView.DisplayConfig.SOURCE;
+    public static final int DEFAULT_RENDER_MODE = CropView.RenderMode.DIRECT;
+    public static final boolean DEFAULT_ADAPTIVE_QUALITY = false;
 
     private float viewportRatio = DEFAULT_VIEWPORT_RATIO;
     private float maxScale = DEFAULT_MAXIMUM_SCALE;
@@ -35,6 +40,9 @@ class CropViewConfig {
     private int viewportOverlayPadding = DEFAULT_VIEWPORT_OVERLAY_PADDING;
     private int viewportOverlayColor = DEFAULT_VIEWPORT_OVERLAY_COLOR;
     private @CropView.Shape int shape = DEFAULT_SHAPE;
+    private @CropView.DisplayConfig int displayConfig = DEFAULT_DISPLAY_CONFIG;
+    private @CropView.RenderMode int renderMode = DEFAULT_RENDER_MODE;
+    private boolean adaptiveQuality = DEFAULT_ADAPTIVE_QUALITY;
 
     public int getViewportOverlayColor() {
         return viewportOverlayColor;
@@ -84,6 +92,30 @@ class CropViewConfig {
         this.shape = shape;
     }
 
+    public @CropView.DisplayConfig int displayConfig() {
+        return displayConfig;
+    }
+
+    public void setDisplayConfig(@CropView.DisplayConfig int displayConfig) {
+        this.displayConfig = displayConfig;
+    }
+
+    public @CropView.RenderMode int renderMode() {
+        return renderMode;
+    }
+
+    public void setRenderMode(@CropView.RenderMode int renderMode) {
+        this.renderMode = renderMode;
+    }
+
+    public boolean adaptiveQuality() {
+        return adaptiveQuality;
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        this.adaptiveQuality = adaptiveQuality;
+    }
+
     public static CropViewConfig from(Context context, AttributeSet attrs) {
         final CropViewConfig cropViewConfig = new CropViewConfig();
 
@@ -119,6 +151,17 @@ class CropViewConfig {
                 R.styleable.CropView_cropviewShape, CropViewConfig.DEFAULT_SHAPE);
         cropViewConfig.setShape(shape);
 
+        @CropView.DisplayConfig int displayConfig = attributes.getInt(
+                R.styleable.CropView_cropviewDisplayConfig, CropViewConfig.DEFAULT_DISPLAY_CONFIG);
+        cropViewConfig.setDisplayConfig(displayConfig);
+
+        @CropView.RenderMode int renderMode = attributes.getInt(
+                R.styleable.CropView_cropviewRenderMode, CropViewConfig.DEFAULT_RENDER_MODE);
+        cropViewConfig.setRenderMode(renderMode);
+
+        cropViewConfig.setAdaptiveQuality(attributes.getBoolean(
+                R.styleable.CropView_cropviewAdaptiveQuality, CropViewConfig.DEFAULT_ADAPTIVE_QUALITY));
+
         attributes.recycle();
 
         return cropViewConfig;
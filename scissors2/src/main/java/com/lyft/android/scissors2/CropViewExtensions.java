@@ -20,6 +20,8 @@ import android.app.Fragment;
 import android.content.Intent;
 import android.graphics.Rect;
 
+import com.lyft.android.scissors2.geometry.CropState;
+
 import static com.lyft.android.scissors2.CropView.Extensions.LoaderType;
 
 class CropViewExtensions {
@@ -57,6 +59,8 @@ class CropViewExtensions {
                 return GlideBitmapLoader.createUsing(cropView);
             case UIL:
                 return UILBitmapLoader.createUsing(cropView);
+            case NATIVE:
+                return NativeBitmapLoader.createUsing(cropView);
             case CLASS_LOOKUP:
                 break;
             default:
@@ -72,7 +76,7 @@ class CropViewExtensions {
         if (HAS_UIL) {
             return UILBitmapLoader.createUsing(cropView);
         }
-        throw new IllegalStateException("You must provide a BitmapLoader.");
+        return NativeBitmapLoader.createUsing(cropView);
     }
 
     static boolean canHasClass(String className) {
@@ -85,19 +89,7 @@ class CropViewExtensions {
     }
 
     static Rect computeTargetSize(int sourceWidth, int sourceHeight, int viewportWidth, int viewportHeight) {
-
-        if (sourceWidth == viewportWidth && sourceHeight == viewportHeight) {
-            return new Rect(0, 0, viewportWidth, viewportHeight); // Fail fast for when source matches exactly on viewport
-        }
-
-        float scale;
-        if (sourceWidth * viewportHeight > viewportWidth * sourceHeight) {
-            scale = (float) viewportHeight / (float) sourceHeight;
-        } else {
-            scale = (float) viewportWidth / (float) sourceWidth;
-        }
-        final int recommendedWidth = (int) ((sourceWidth * scale) + 0.5f);
-        final int recommendedHeight = (int) ((sourceHeight * scale) + 0.5f);
-        return new Rect(0, 0, recommendedWidth, recommendedHeight);
+        final float scale = CropState.computeFillScale(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+        return new Rect(0, 0, CropState.scaleSize(sourceWidth, scale), CropState.scaleSize(sourceHeight, scale));
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes files atomically: through a buffer into a temporary file next to the destination, optionally synced to storage, then
+ * renamed over the destination. Readers never see a partially written file, even if the process dies while writing.
+ */
+class FileSink {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final String TEMP_SUFFIX = ".tmp";
+
+    interface Content {
+
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    private FileSink() {
+    }
+
+    static WriteResult write(File file, boolean sync, Content content) throws IOException {
+        final long start = System.nanoTime();
+        final File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+
+        final File temp = File.createTempFile("." + file.getName() + ".", TEMP_SUFFIX, directory);
+        FileOutputStream fileStream = null;
+        boolean renamed = false;
+        try {
+            fileStream = new FileOutputStream(temp);
+            final OutputStream outputStream = new BufferedOutputStream(fileStream, BUFFER_SIZE);
+            content.writeTo(outputStream);
+            outputStream.flush();
+            if (sync) {
+                fileStream.getFD().sync();
+            }
+            fileStream.close();
+            fileStream = null;
+
+            final long byteCount = temp.length();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+            renamed = true;
+            return new WriteResult(file, byteCount, System.nanoTime() - start, sync);
+        } finally {
+            Utils.closeQuietly(fileStream);
+            if (!renamed) {
+                temp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Touch events recorded from a {@link CropView}, see {@link CropView#setGestureTrace(GestureTrace)}, so that a gesture can be
+ * written to a compact file and replayed later.
+ * <p>
+ * Each event keeps its time, action and the id and position of every pointer. Only the latest sample of batched moves is
+ * kept, which is all gestures are detected from. Events are recorded into primitive arrays, so recording allocates nothing but
+ * the occasional growth of these arrays. Not thread safe, meant to be used from the main thread.
+ */
+public final class GestureTrace {
+
+    private static final int MAGIC = 0x53434754; // SCGT
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size;
+    private long[] eventTimes = new long[INITIAL_CAPACITY];
+    private int[] actions = new int[INITIAL_CAPACITY];
+    private int[] pointerOffsets = new int[INITIAL_CAPACITY + 1];
+
+    private int pointerSize;
+    private int[] pointerIds = new int[INITIAL_CAPACITY];
+    private float[] xs = new float[INITIAL_CAPACITY];
+    private float[] ys = new float[INITIAL_CAPACITY];
+
+    /**
+     * Appends {@code event}, which may be recycled right after.
+     */
+    public void add(@NonNull MotionEvent event) {
+        final int pointerCount = event.getPointerCount();
+        ensurePointerCapacity(pointerSize + pointerCount);
+        for (int i = 0; i < pointerCount; i++) {
+            pointerIds[pointerSize + i] = event.getPointerId(i);
+            xs[pointerSize + i] = event.getX(i);
+            ys[pointerSize + i] = event.getY(i);
+        }
+        append(event.getEventTime(), event.getAction(), pointerCount);
+    }
+
+    /**
+     * Appends an event of given pointers, one entry each in {@code pointerIds}, {@code xs} and {@code ys}.
+     */
+    void add(long eventTime, int action, int[] pointerIds, float[] xs, float[] ys) {
+        final int pointerCount = pointerIds.length;
+        ensurePointerCapacity(pointerSize + pointerCount);
+        System.arraycopy(pointerIds, 0, this.pointerIds, pointerSize, pointerCount);
+        System.arraycopy(xs, 0, this.xs, pointerSize, pointerCount);
+        System.arraycopy(ys, 0, this.ys, pointerSize, pointerCount);
+        append(eventTime, action, pointerCount);
+    }
+
+    private void append(long eventTime, int action, int pointerCount) {
+        if (size == actions.length) {
+            final int capacity = size * 2;
+            eventTimes = Arrays.copyOf(eventTimes, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            pointerOffsets = Arrays.copyOf(pointerOffsets, capacity + 1);
+        }
+        eventTimes[size] = eventTime;
+        actions[size] = action;
+        pointerSize += pointerCount;
+        pointerOffsets[++size] = pointerSize;
+    }
+
+    private void ensurePointerCapacity(int capacity) {
+        if (capacity > pointerIds.length) {
+            final int newCapacity = Math.max(capacity, pointerIds.length * 2);
+            pointerIds = Arrays.copyOf(pointerIds, newCapacity);
+            xs = Arrays.copyOf(xs, newCapacity);
+            ys = Arrays.copyOf(ys, newCapacity);
+        }
+    }
+
+    /**
+     * @return Number of events recorded.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Time of the event at {@code index} in milliseconds, only meaningful relative to the time of other events.
+     */
+    public long getEventTime(int index) {
+        checkIndex(index);
+        return eventTimes[index];
+    }
+
+    /**
+     * @return Action of the event at {@code index}, including the index of the pointer it applies to, see
+     * {@link MotionEvent#getAction()}.
+     */
+    public int getAction(int index) {
+        checkIndex(index);
+        return actions[index];
+    }
+
+    public int getPointerCount(int index) {
+        checkIndex(index);
+        return pointerOffsets[index + 1] - pointerOffsets[index];
+    }
+
+    public int getPointerId(int index, int pointerIndex) {
+        return pointerIds[pointerOffset(index, pointerIndex)];
+    }
+
+    public float getX(int index, int pointerIndex) {
+        return xs[pointerOffset(index, pointerIndex)];
+    }
+
+    public float getY(int index, int pointerIndex) {
+        return ys[pointerOffset(index, pointerIndex)];
+    }
+
+    private int pointerOffset(int index, int pointerIndex) {
+        if (pointerIndex < 0 || pointerIndex >= getPointerCount(index)) {
+            throw new IndexOutOfBoundsException("Pointer " + pointerIndex + " of event " + index);
+        }
+        return pointerOffsets[index] + pointerIndex;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Event " + index + " of " + size);
+        }
+    }
+
+    /**
+     * Drops every event recorded so far.
+     */
+    public void clear() {
+        size = 0;
+        pointerSize = 0;
+    }
+
+    /**
+     * Writes events recorded so far, times as deltas from the previous event, in a few bytes per event and nine bytes per
+     * pointer. {@code outputStream} is left open.
+     */
+    public void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        Utils.checkNotNull(outputStream, "outputStream == null");
+        final DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(size);
+        long previousTime = size > 0 ? eventTimes[0] : 0;
+        for (int i = 0; i < size; i++) {
+            writeVarLong(out, eventTimes[i] - previousTime);
+            previousTime = eventTimes[i];
+            out.writeShort(actions[i]);
+            out.writeByte(pointerOffsets[i + 1] - pointerOffsets[i]);
+            for (int p = pointerOffsets[i]; p < pointerOffsets[i + 1]; p++) {
+                out.writeByte(pointerIds[p]);
+                out.writeFloat(xs[p]);
+                out.writeFloat(ys[p]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads events written by {@link #writeTo(OutputStream)}, the first one at time 0. {@code inputStream} is left open.
+     *
+     * @throws IOException If {@code inputStream} does not hold a trace.
+     */
+    @NonNull
+    public static GestureTrace readFrom(@NonNull InputStream inputStream) throws IOException {
+        Utils.checkNotNull(inputStream, "inputStream == null");
+        final DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a gesture trace");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported gesture trace version " + version);
+        }
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt gesture trace");
+        }
+
+        final GestureTrace trace = new GestureTrace();
+        long eventTime = 0;
+        for (int i = 0; i < size; i++) {
+            eventTime += readVarLong(in);
+            final int action = in.readUnsignedShort();
+            final int pointerCount = in.readUnsignedByte();
+            trace.ensurePointerCapacity(trace.pointerSize + pointerCount);
+            for (int p = trace.pointerSize; p < trace.pointerSize + pointerCount; p++) {
+                trace.pointerIds[p] = in.readUnsignedByte();
+                trace.xs[p] = in.readFloat();
+                trace.ys[p] = in.readFloat();
+            }
+            trace.append(eventTime, action, pointerCount);
+        }
+        return trace;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt gesture trace");
+    }
+}
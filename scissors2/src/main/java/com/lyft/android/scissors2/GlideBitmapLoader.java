@@ -59,6 +59,7 @@ public class GlideBitmapLoader implements BitmapLoader {
 
     public static BitmapLoader createUsing(@NonNull CropView cropView, @NonNull RequestManager requestManager) {
         return new GlideBitmapLoader(requestManager,
-                GlideFillViewportTransformation.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight()));
+                GlideFillViewportTransformation.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight(),
+                        cropView.getDisplayConfig()));
     }
 }
@@ -31,41 +31,49 @@ class GlideFillViewportTransformation extends BitmapTransformation {
 
     private final int viewportWidth;
     private final int viewportHeight;
+    private final @CropView.DisplayConfig int displayConfig;
 
-    public GlideFillViewportTransformation(int viewportWidth, int viewportHeight) {
+    public GlideFillViewportTransformation(int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig) {
         this.viewportWidth = viewportWidth;
         this.viewportHeight = viewportHeight;
+        this.displayConfig = displayConfig;
     }
 
     @Override
     protected Bitmap transform(BitmapPool bitmapPool, Bitmap source, int outWidth, int outHeight) {
-        int sourceWidth = source.getWidth();
-        int sourceHeight = source.getHeight();
+        CropTrace.begin("GlideFillViewportTransformation.transform");
+        try {
+            int sourceWidth = source.getWidth();
+            int sourceHeight = source.getHeight();
 
-        Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+            Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
 
-        int targetWidth = target.width();
-        int targetHeight = target.height();
+            int targetWidth = target.width();
+            int targetHeight = target.height();
 
-        return Bitmap.createScaledBitmap(
-                source,
-                targetWidth,
-                targetHeight,
-                true);
+            return Utils.scaleForDisplay(
+                    source,
+                    targetWidth,
+                    targetHeight,
+                    displayConfig);
+        } finally {
+            CropTrace.end();
+        }
     }
 
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof GlideFillViewportTransformation) {
             GlideFillViewportTransformation other = (GlideFillViewportTransformation) obj;
-            return other.viewportWidth == viewportWidth && other.viewportHeight == viewportHeight;
+            return other.viewportWidth == viewportWidth && other.viewportHeight == viewportHeight
+                    && other.displayConfig == displayConfig;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        int hash = viewportWidth * 31 + viewportHeight;
+        int hash = (viewportWidth * 31 + viewportHeight) * 31 + displayConfig;
         return hash * 17 + ID.hashCode();
     }
 
@@ -75,6 +83,11 @@ class GlideFillViewportTransformation extends BitmapTransformation {
     }
 
     public static BitmapTransformation createUsing(int viewportWidth, int viewportHeight) {
-        return new GlideFillViewportTransformation(viewportWidth, viewportHeight);
+        return createUsing(viewportWidth, viewportHeight, CropViewConfig.DEFAULT_DISPLAY_CONFIG);
+    }
+
+    public static BitmapTransformation createUsing(int viewportWidth, int viewportHeight,
+            @CropView.DisplayConfig int displayConfig) {
+        return new GlideFillViewportTransformation(viewportWidth, viewportHeight, displayConfig);
     }
 }
@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming baseline JPEG encoder, YCbCr 4:2:0 with the standard tables of ITU T.81 Annex K.
+ * <p>
+ * Rows are buffered until a full row of 16x16 MCUs is available, which is then transformed and entropy coded right away.
+ */
+class JpegStripEncoder extends StripEncoder {
+
+    private static final int MCU_SIZE = 16;
+
+    private static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    private static final int[] LUMINANCE_QUANTIZATION = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    private static final int[] CHROMINANCE_QUANTIZATION = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    private static final int[] DC_LUMINANCE_BITS = { 0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0 };
+    private static final int[] DC_LUMINANCE_VALUES = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 };
+    private static final int[] DC_CHROMINANCE_BITS = { 0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0 };
+    private static final int[] DC_CHROMINANCE_VALUES = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 };
+
+    private static final int[] AC_LUMINANCE_BITS = { 0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d };
+    private static final int[] AC_LUMINANCE_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08, 0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16, 0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+    private static final int[] AC_CHROMINANCE_BITS = { 0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77 };
+    private static final int[] AC_CHROMINANCE_VALUES = {
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34, 0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    private static final float[] AAN_SCALE_FACTORS = {
+            1.0f, 1.387039845f, 1.306562965f, 1.175875602f, 1.0f, 0.785694958f, 0.541196100f, 0.275899379f
+    };
+
+    private final int[] luminanceTable = new int[64];
+    private final int[] chrominanceTable = new int[64];
+    private final float[] luminanceDivisors = new float[64];
+    private final float[] chrominanceDivisors = new float[64];
+
+    private final int[][] dcLuminanceCodes = huffmanCodes(DC_LUMINANCE_BITS, DC_LUMINANCE_VALUES);
+    private final int[][] dcChrominanceCodes = huffmanCodes(DC_CHROMINANCE_BITS, DC_CHROMINANCE_VALUES);
+    private final int[][] acLuminanceCodes = huffmanCodes(AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+    private final int[][] acChrominanceCodes = huffmanCodes(AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+    private final int paddedWidth;
+    private final float[] yRows;
+    private final float[] cbRows;
+    private final float[] crRows;
+    private final float[] block = new float[64];
+    private final int[] quantized = new int[64];
+    private int bufferedRows;
+
+    private int previousY;
+    private int previousCb;
+    private int previousCr;
+
+    private final byte[] buffer = new byte[16 * 1024];
+    private int bufferLength;
+    private int bitBuffer;
+    private int bitCount;
+
+    JpegStripEncoder(int width, int height, int quality, OutputStream outputStream) {
+        super(width, height, outputStream);
+        Utils.checkArg(quality >= 0 && quality <= 100, "quality must be 0..100");
+        // SOF0 stores both dimensions in 16 bits
+        Utils.checkArg(width <= 0xFFFF && height <= 0xFFFF, "JPEG width and height must be <= 65535");
+
+        paddedWidth = (width + MCU_SIZE - 1) / MCU_SIZE * MCU_SIZE;
+        yRows = new float[paddedWidth * MCU_SIZE];
+        cbRows = new float[paddedWidth * MCU_SIZE];
+        crRows = new float[paddedWidth * MCU_SIZE];
+
+        scaleQuantization(LUMINANCE_QUANTIZATION, quality, luminanceTable, luminanceDivisors);
+        scaleQuantization(CHROMINANCE_QUANTIZATION, quality, chrominanceTable, chrominanceDivisors);
+    }
+
+    @Override
+    long bufferSize(int stripHeight) {
+        return 3L * paddedWidth * MCU_SIZE * 4 + buffer.length;
+    }
+
+    @Override
+    int rowAlignment() {
+        return MCU_SIZE;
+    }
+
+    @Override
+    void writeHeader() throws IOException {
+        writeMarker(0xD8); // SOI
+
+        writeMarker(0xE0); // APP0, JFIF 1.01 without thumbnail
+        writeShort(16);
+        writeBytes('J', 'F', 'I', 'F', 0, 1, 1, 0);
+        writeShort(1);
+        writeShort(1);
+        writeBytes(0, 0);
+
+        writeMarker(0xDB); // DQT
+        writeShort(2 + 2 * 65);
+        writeByte(0);
+        for (int i = 0; i < 64; i++) {
+            writeByte(luminanceTable[ZIGZAG[i]]);
+        }
+        writeByte(1);
+        for (int i = 0; i < 64; i++) {
+            writeByte(chrominanceTable[ZIGZAG[i]]);
+        }
+
+        writeMarker(0xC0); // SOF0
+        writeShort(8 + 3 * 3);
+        writeByte(8);
+        writeShort(height);
+        writeShort(width);
+        writeByte(3);
+        writeBytes(1, 0x22, 0); // Y, 2x2 sampling
+        writeBytes(2, 0x11, 1); // Cb
+        writeBytes(3, 0x11, 1); // Cr
+
+        writeMarker(0xC4); // DHT
+        writeShort(2 + 4 * 17 + DC_LUMINANCE_VALUES.length + AC_LUMINANCE_VALUES.length
+                + DC_CHROMINANCE_VALUES.length + AC_CHROMINANCE_VALUES.length);
+        writeHuffmanTable(0x00, DC_LUMINANCE_BITS, DC_LUMINANCE_VALUES);
+        writeHuffmanTable(0x10, AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+        writeHuffmanTable(0x01, DC_CHROMINANCE_BITS, DC_CHROMINANCE_VALUES);
+        writeHuffmanTable(0x11, AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+        writeMarker(0xDA); // SOS
+        writeShort(6 + 2 * 3);
+        writeByte(3);
+        writeBytes(1, 0x00);
+        writeBytes(2, 0x11);
+        writeBytes(3, 0x11);
+        writeBytes(0, 63, 0);
+    }
+
+    @Override
+    void encodeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        for (int y = 0; y < rows; y++) {
+            final int start = offset + y * stride;
+            final int rowStart = bufferedRows * paddedWidth;
+            for (int x = 0; x < paddedWidth; x++) {
+                final int argb = pixels[start + Math.min(x, width - 1)];
+                final int r = (argb >> 16) & 0xFF;
+                final int g = (argb >> 8) & 0xFF;
+                final int b = argb & 0xFF;
+                yRows[rowStart + x] = 0.299f * r + 0.587f * g + 0.114f * b - 128;
+                cbRows[rowStart + x] = -0.168736f * r - 0.331264f * g + 0.5f * b;
+                crRows[rowStart + x] = 0.5f * r - 0.418688f * g - 0.081312f * b;
+            }
+            if (++bufferedRows == MCU_SIZE) {
+                encodeMcuRow();
+            }
+        }
+    }
+
+    @Override
+    void writeTrailer() throws IOException {
+        if (bufferedRows > 0) {
+            // Replicate the last row down to a full MCU row
+            final int last = (bufferedRows - 1) * paddedWidth;
+            for (int row = bufferedRows; row < MCU_SIZE; row++) {
+                System.arraycopy(yRows, last, yRows, row * paddedWidth, paddedWidth);
+                System.arraycopy(cbRows, last, cbRows, row * paddedWidth, paddedWidth);
+                System.arraycopy(crRows, last, crRows, row * paddedWidth, paddedWidth);
+            }
+            encodeMcuRow();
+        }
+        // Pad the last byte with ones
+        writeBits(0x7F, 7);
+        flushBuffer();
+        outputStream.write(0xFF);
+        outputStream.write(0xD9); // EOI
+    }
+
+    private void encodeMcuRow() throws IOException {
+        for (int mcuX = 0; mcuX < paddedWidth; mcuX += MCU_SIZE) {
+            previousY = encodeLumaBlock(mcuX, 0, previousY);
+            previousY = encodeLumaBlock(mcuX + 8, 0, previousY);
+            previousY = encodeLumaBlock(mcuX, 8, previousY);
+            previousY = encodeLumaBlock(mcuX + 8, 8, previousY);
+            previousCb = encodeChromaBlock(cbRows, mcuX, previousCb);
+            previousCr = encodeChromaBlock(crRows, mcuX, previousCr);
+        }
+        bufferedRows = 0;
+    }
+
+    private int encodeLumaBlock(int left, int top, int previousDc) throws IOException {
+        for (int y = 0; y < 8; y++) {
+            System.arraycopy(yRows, (top + y) * paddedWidth + left, block, y * 8, 8);
+        }
+        return encodeBlock(luminanceDivisors, previousDc, dcLuminanceCodes, acLuminanceCodes);
+    }
+
+    private int encodeChromaBlock(float[] rows, int left, int previousDc) throws IOException {
+        for (int y = 0; y < 8; y++) {
+            final int top = (2 * y) * paddedWidth + left;
+            final int bottom = top + paddedWidth;
+            for (int x = 0; x < 8; x++) {
+                block[y * 8 + x] = (rows[top + 2 * x] + rows[top + 2 * x + 1]
+                        + rows[bottom + 2 * x] + rows[bottom + 2 * x + 1]) * 0.25f;
+            }
+        }
+        return encodeBlock(chrominanceDivisors, previousDc, dcChrominanceCodes, acChrominanceCodes);
+    }
+
+    private int encodeBlock(float[] divisors, int previousDc, int[][] dcCodes, int[][] acCodes) throws IOException {
+        forwardDct(block);
+        for (int i = 0; i < 64; i++) {
+            quantized[i] = Math.round(block[ZIGZAG[i]] * divisors[ZIGZAG[i]]);
+        }
+
+        final int dc = quantized[0];
+        writeCoefficient(dcCodes, 0, dc - previousDc);
+
+        int zeros = 0;
+        for (int i = 1; i < 64; i++) {
+            final int coefficient = quantized[i];
+            if (coefficient == 0) {
+                zeros++;
+                continue;
+            }
+            while (zeros > 15) {
+                writeBits(acCodes[0xF0][0], acCodes[0xF0][1]); // ZRL
+                zeros -= 16;
+            }
+            writeCoefficient(acCodes, zeros << 4, coefficient);
+            zeros = 0;
+        }
+        if (zeros > 0) {
+            writeBits(acCodes[0x00][0], acCodes[0x00][1]); // EOB
+        }
+        return dc;
+    }
+
+    private void writeCoefficient(int[][] codes, int run, int value) throws IOException {
+        final int magnitude = value < 0 ? -value : value;
+        final int size = magnitude == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(magnitude);
+        final int[] code = codes[run | size];
+        writeBits(code[0], code[1]);
+        if (size > 0) {
+            writeBits(value < 0 ? value - 1 : value, size);
+        }
+    }
+
+    /**
+     * Floating point AAN forward DCT, in place. Output is scaled by the AAN factors which are folded into the divisors.
+     */
+    static void forwardDct(float[] data) {
+        for (int pass = 0; pass < 2; pass++) {
+            final int step = pass == 0 ? 1 : 8;
+            final int next = pass == 0 ? 8 : 1;
+            for (int line = 0, o = 0; line < 8; line++, o += next) {
+                final float tmp0 = data[o] + data[o + 7 * step];
+                final float tmp7 = data[o] - data[o + 7 * step];
+                final float tmp1 = data[o + step] + data[o + 6 * step];
+                final float tmp6 = data[o + step] - data[o + 6 * step];
+                final float tmp2 = data[o + 2 * step] + data[o + 5 * step];
+                final float tmp5 = data[o + 2 * step] - data[o + 5 * step];
+                final float tmp3 = data[o + 3 * step] + data[o + 4 * step];
+                final float tmp4 = data[o + 3 * step] - data[o + 4 * step];
+
+                float tmp10 = tmp0 + tmp3;
+                final float tmp13 = tmp0 - tmp3;
+                float tmp11 = tmp1 + tmp2;
+                float tmp12 = tmp1 - tmp2;
+
+                data[o] = tmp10 + tmp11;
+                data[o + 4 * step] = tmp10 - tmp11;
+
+                final float z1 = (tmp12 + tmp13) * 0.707106781f;
+                data[o + 2 * step] = tmp13 + z1;
+                data[o + 6 * step] = tmp13 - z1;
+
+                tmp10 = tmp4 + tmp5;
+                tmp11 = tmp5 + tmp6;
+                tmp12 = tmp6 + tmp7;
+
+                final float z5 = (tmp10 - tmp12) * 0.382683433f;
+                final float z2 = 0.541196100f * tmp10 + z5;
+                final float z4 = 1.306562965f * tmp12 + z5;
+                final float z3 = tmp11 * 0.707106781f;
+
+                final float z11 = tmp7 + z3;
+                final float z13 = tmp7 - z3;
+
+                data[o + 5 * step] = z13 + z2;
+                data[o + 3 * step] = z13 - z2;
+                data[o + step] = z11 + z4;
+                data[o + 7 * step] = z11 - z4;
+            }
+        }
+    }
+
+    private static void scaleQuantization(int[] base, int quality, int[] table, float[] divisors) {
+        quality = Math.max(1, quality);
+        final int scale = quality < 50 ? 5000 / quality : 200 - quality * 2;
+        for (int i = 0; i < 64; i++) {
+            table[i] = Math.max(1, Math.min(255, (base[i] * scale + 50) / 100));
+        }
+        for (int row = 0, i = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++, i++) {
+                divisors[i] = 1.0f / (table[i] * AAN_SCALE_FACTORS[row] * AAN_SCALE_FACTORS[column] * 8.0f);
+            }
+        }
+    }
+
+    /**
+     * @return Code and length for each symbol, indexed by symbol.
+     */
+    private static int[][] huffmanCodes(int[] bits, int[] values) {
+        final int[][] codes = new int[256][2];
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            for (int i = 0; i < bits[length - 1]; i++) {
+                codes[values[k]][0] = code;
+                codes[values[k]][1] = length;
+                k++;
+                code++;
+            }
+            code <<= 1;
+        }
+        return codes;
+    }
+
+    private void writeHuffmanTable(int id, int[] bits, int[] values) throws IOException {
+        writeByte(id);
+        for (int count : bits) {
+            writeByte(count);
+        }
+        for (int value : values) {
+            writeByte(value);
+        }
+    }
+
+    private void writeBits(int value, int length) throws IOException {
+        bitBuffer = (bitBuffer << length) | (value & ((1 << length) - 1));
+        bitCount += length;
+        while (bitCount >= 8) {
+            final int b = (bitBuffer >> (bitCount - 8)) & 0xFF;
+            appendByte(b);
+            if (b == 0xFF) {
+                appendByte(0); // byte stuffing
+            }
+            bitCount -= 8;
+        }
+        bitBuffer &= (1 << bitCount) - 1;
+    }
+
+    private void writeMarker(int marker) throws IOException {
+        appendByte(0xFF);
+        appendByte(marker);
+    }
+
+    private void writeShort(int value) throws IOException {
+        appendByte(value >> 8);
+        appendByte(value);
+    }
+
+    private void writeByte(int value) throws IOException {
+        appendByte(value);
+    }
+
+    private void writeBytes(int... values) throws IOException {
+        for (int value : values) {
+            appendByte(value);
+        }
+    }
+
+    private void appendByte(int value) throws IOException {
+        if (bufferLength == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferLength++] = (byte) value;
+    }
+
+    private void flushBuffer() throws IOException {
+        outputStream.write(buffer, 0, bufferLength);
+        bufferLength = 0;
+    }
+}
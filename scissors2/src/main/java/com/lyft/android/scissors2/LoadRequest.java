@@ -12,6 +12,7 @@ public class LoadRequest {
     private final CropView cropView;
     private BitmapLoader bitmapLoader;
     private LoaderType loaderType = LoaderType.CLASS_LOOKUP;
+    private CropMetrics metrics;
 
     LoadRequest(CropView cropView) {
         Utils.checkNotNull(cropView, "cropView == null");
@@ -41,6 +42,17 @@ public class LoadRequest {
         return this;
     }
 
+    /**
+     * Listener told how long loading took, in addition to the global one, see {@link CropMetrics#setGlobal(CropMetrics)}.
+     *
+     * @param metrics Listener to tell or <code>null</code> for the global one only.
+     * @return current request for chaining, you should call {@link #load(Object)} afterwards.
+     */
+    public LoadRequest metrics(@Nullable CropMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     /**
      * Load a {@link Bitmap} using a {@link BitmapLoader} into {@link CropView}
      *
@@ -59,6 +71,8 @@ public class LoadRequest {
         if (bitmapLoader == null) {
             bitmapLoader = resolveBitmapLoader(cropView, loaderType);
         }
+        cropView.setOriginalSource(model != null ? new OriginalSource(cropView.getContext(), model) : null);
+        cropView.beginLoad(bitmapLoader, model != null ? CropMetrics.resolve(metrics) : null);
         bitmapLoader.load(model, cropView);
     }
 
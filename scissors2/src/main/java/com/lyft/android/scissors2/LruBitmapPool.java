@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link BitmapPool} keyed by size and {@link Bitmap.Config}, evicting least recently used sizes once over {@code maxSize} bytes.
+ */
+public class LruBitmapPool implements BitmapPool {
+
+    private final long maxSize;
+    private final Map<Key, ArrayDeque<Bitmap>> bitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * @param maxSize Maximum number of bytes held by pooled bitmaps.
+     */
+    public LruBitmapPool(long maxSize) {
+        Utils.checkArg(maxSize >= 0, "maxSize must be >= 0");
+        this.maxSize = maxSize;
+    }
+
+    @Nullable
+    @Override
+    public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        final ArrayDeque<Bitmap> pooled = bitmaps.get(new Key(width, height, config));
+        if (pooled == null || pooled.isEmpty()) {
+            return null;
+        }
+        final Bitmap bitmap = pooled.pop();
+        size -= bitmap.getByteCount();
+        return bitmap;
+    }
+
+    @Override
+    public synchronized void put(@NonNull Bitmap bitmap) {
+        Utils.checkNotNull(bitmap, "bitmap == null");
+        if (bitmap.isRecycled() || CropSnapshot.isPinned(bitmap)) {
+            // Left to the garbage collector rather than pooled while a crop in progress still reads it
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || bitmap.getByteCount() > maxSize) {
+            bitmap.recycle();
+            return;
+        }
+
+        final Key key = new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> pooled = bitmaps.get(key);
+        if (pooled == null) {
+            pooled = new ArrayDeque<>();
+            bitmaps.put(key, pooled);
+        }
+        pooled.push(bitmap);
+        size += bitmap.getByteCount();
+        trimTo(maxSize);
+    }
+
+    @Override
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    /**
+     * @return Number of bytes currently held by pooled bitmaps.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void trimTo(long maxSize) {
+        final Iterator<ArrayDeque<Bitmap>> iterator = bitmaps.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            final ArrayDeque<Bitmap> pooled = iterator.next();
+            while (size > maxSize && !pooled.isEmpty()) {
+                final Bitmap bitmap = pooled.removeLast();
+                size -= bitmap.getByteCount();
+                bitmap.recycle();
+            }
+            if (pooled.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Key {
+
+        private final int width;
+        private final int height;
+        private final Bitmap.Config config;
+
+        Key(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return other.width == width && other.height == height && other.config == config;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = width * 31 + height;
+            return hash * 17 + config.hashCode();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Crops the bitmap of a {@link CropView} through several viewports of different aspect ratios at once, from a single decode.
+ * <p>
+ * Each viewport keeps the current scale and the bitmap point at the center of the {@link CropView} viewport, as far as its
+ * aspect ratio allows.
+ */
+public class MultiCropRequest {
+
+    private static final String TAG = "scissors.MultiCrop";
+
+    private final CropView cropView;
+    private final float[] viewportRatios;
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+    private int quality = CropViewConfig.DEFAULT_IMAGE_QUALITY;
+    private boolean fromOriginal;
+    private OriginalSource originalSource;
+    private OutputSize outputSize = OutputSize.ORIGINAL;
+    private long maxMemory;
+    private boolean sync;
+    private Executor executor = Utils.defaultExecutor();
+    private @CropRequest.Priority int priority = CropRequest.Priority.NORMAL;
+
+    MultiCropRequest(@NonNull CropView cropView, @NonNull float[] viewportRatios) {
+        Utils.checkNotNull(cropView, "cropView == null");
+        Utils.checkNotNull(viewportRatios, "viewportRatios == null");
+        Utils.checkArg(viewportRatios.length > 0, "At least one viewport ratio is required");
+        for (float viewportRatio : viewportRatios) {
+            Utils.checkArg(viewportRatio >= 0, "viewportRatios must be >= 0");
+        }
+        this.cropView = cropView;
+        this.viewportRatios = viewportRatios.clone();
+    }
+
+    /**
+     * Compression format to use, defaults to {@link Bitmap.CompressFormat#JPEG}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest format(@NonNull Bitmap.CompressFormat format) {
+        Utils.checkNotNull(format, "format == null");
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Compression quality to use (must be 0..100), defaults to {@value CropViewConfig#DEFAULT_IMAGE_QUALITY}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest quality(int quality) {
+        Utils.checkArg(quality >= 0 && quality <= 100, "quality must be 0..100");
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * Crop from the original image at its full resolution, decoding the region covering every viewport only once when that
+     * takes no more memory than decoding each of them, see {@link #maxMemory(long)} and {@link CropRequest#fromOriginal()}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest fromOriginal() {
+        this.fromOriginal = true;
+        this.originalSource = null;
+        return this;
+    }
+
+    /**
+     * Crop from the given original image at its full resolution, see {@link CropRequest#fromOriginal(Object)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest fromOriginal(@NonNull Object model) {
+        Utils.checkNotNull(model, "model == null");
+        this.fromOriginal = true;
+        this.originalSource = new OriginalSource(cropView.getContext(), model);
+        return this;
+    }
+
+    /**
+     * Bounds the size of each cropped bitmap, see {@link CropRequest#maxOutputSize(int, int)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest maxOutputSize(int maxWidth, int maxHeight) {
+        this.outputSize = OutputSize.atMost(maxWidth, maxHeight);
+        return this;
+    }
+
+    /**
+     * Bounds both dimensions of each cropped bitmap to {@code maxSize}, see {@link #maxOutputSize(int, int)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest maxOutputSize(int maxSize) {
+        return maxOutputSize(maxSize, maxSize);
+    }
+
+    /**
+     * Bytes the single decode shared by all viewports may take when cropping from the original, defaults to as many as
+     * decoding the largest viewport alone. Viewports covering a larger region than that together, such as a wide and a tall
+     * one, are then decoded one after the other.
+     *
+     * @param maxMemory Approximate number of bytes, must be &gt; 0.
+     * @return current request for chaining.
+     */
+    public MultiCropRequest maxMemory(long maxMemory) {
+        Utils.checkArg(maxMemory > 0, "maxMemory must be > 0");
+        this.maxMemory = maxMemory;
+        return this;
+    }
+
+    /**
+     * Whether to sync files to storage before renaming them into place, see {@link CropRequest#sync(boolean)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest sync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    /**
+     * Executor to run this request on, see {@link CropRequest#executor(Executor)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest executor(@NonNull Executor executor) {
+        Utils.checkNotNull(executor, "executor == null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Priority of this request, see {@link CropRequest#priority(int)}.
+     *
+     * @return current request for chaining.
+     */
+    public MultiCropRequest priority(@CropRequest.Priority int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Asynchronously flush each cropped bitmap into provided files, creating parent directories if required and replacing
+     * each file atomically. Viewports are captured right away, then cropped and encoded in a single background job.
+     *
+     * @param files One file per viewport ratio, in the same order.
+     * @return {@link Future} used to cancel or wait for this request, failing with the first failure once every other file has
+     * been written or abandoned.
+     */
+    public Future<Void> into(@NonNull File... files) {
+        Utils.checkNotNull(files, "files == null");
+        final CropOutput[] outputs = new CropOutput[files.length];
+        for (int i = 0; i < files.length; i++) {
+            Utils.checkNotNull(files[i], "files[" + i + "] == null");
+            outputs[i] = CropOutput.toFile(files[i], sync, null);
+        }
+        return flush(outputs);
+    }
+
+    /**
+     * Asynchronously flush each cropped bitmap into provided streams, see {@link #into(File...)}.
+     *
+     * @param outputStreams One stream per viewport ratio, in the same order.
+     * @param closeWhenDone wetter or not to close provided streams once flushing is done
+     * @return {@link Future} used to cancel or wait for this request, failing with the first failure.
+     */
+    public Future<Void> into(@NonNull OutputStream[] outputStreams, boolean closeWhenDone) {
+        Utils.checkNotNull(outputStreams, "outputStreams == null");
+        final CropOutput[] outputs = new CropOutput[outputStreams.length];
+        for (int i = 0; i < outputStreams.length; i++) {
+            Utils.checkNotNull(outputStreams[i], "outputStreams[" + i + "] == null");
+            outputs[i] = CropOutput.toStream(outputStreams[i], closeWhenDone, null);
+        }
+        return flush(outputs);
+    }
+
+    private Future<Void> flush(final CropOutput[] outputs) {
+        Utils.checkArg(outputs.length == viewportRatios.length, "One output per viewport ratio is required");
+        final Callable<Bitmap[]> bitmapSource = crop();
+        final BitmapPool pool = cropView.getBitmapPool();
+
+        return Utils.submit(executor, priority, "MultiCropRequest.flush", new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Throwable failure = null;
+                Bitmap[] bitmaps = null;
+                try {
+                    bitmaps = bitmapSource.call();
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to crop bitmaps.", throwable);
+                    }
+                    failure = throwable;
+                }
+
+                for (int i = 0; i < outputs.length; i++) {
+                    try {
+                        if (bitmaps == null) {
+                            outputs[i].abandon();
+                        } else {
+                            outputs[i].write(bitmaps[i], format, quality);
+                        }
+                    } catch (final Throwable throwable) {
+                        if (BuildConfig.DEBUG) {
+                            Log.e(TAG, "Error attempting to save bitmap.", throwable);
+                        }
+                        if (failure == null) {
+                            failure = throwable;
+                        }
+                    } finally {
+                        if (bitmaps != null) {
+                            Utils.release(pool, bitmaps[i]);
+                        }
+                    }
+                }
+                Utils.rethrow(failure);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Captures every viewport on the calling thread, along with the tasks rendering them, which pin the bitmap until they run.
+     */
+    private Callable<Bitmap[]> crop() {
+        final CropSnapshot[] snapshots = new CropSnapshot[viewportRatios.length];
+        for (int i = 0; i < viewportRatios.length; i++) {
+            snapshots[i] = cropView.snapshot(viewportRatios[i]);
+        }
+        if (snapshots[0] == null) {
+            return new Callable<Bitmap[]>() {
+                @Override
+                public Bitmap[] call() {
+                    throw new IllegalStateException("No bitmap to crop.");
+                }
+            };
+        }
+        final OutputSize outputSize = this.outputSize;
+        final long maxMemory = this.maxMemory;
+        final BitmapPool pool = cropView.getBitmapPool();
+
+        if (fromOriginal) {
+            final OriginalSource source = requireOriginalSource();
+            final RectF[] regions = new RectF[snapshots.length];
+            for (int i = 0; i < snapshots.length; i++) {
+                regions[i] = new RectF();
+                snapshots[i].mapViewportToBitmap(regions[i]);
+            }
+            final int bitmapWidth = snapshots[0].getBitmapWidth();
+            final int bitmapHeight = snapshots[0].getBitmapHeight();
+            return new Callable<Bitmap[]>() {
+                @Override
+                public Bitmap[] call() throws Exception {
+                    return source.decodeRegions(regions, bitmapWidth, bitmapHeight, outputSize, maxMemory, pool);
+                }
+            };
+        }
+
+        final List<Callable<Bitmap>> renders = new ArrayList<>(snapshots.length);
+        for (CropSnapshot snapshot : snapshots) {
+            renders.add(snapshot.render(outputSize, pool));
+        }
+        return new Callable<Bitmap[]>() {
+            @Override
+            public Bitmap[] call() throws Exception {
+                final Bitmap[] bitmaps = new Bitmap[renders.size()];
+                try {
+                    for (int i = 0; i < bitmaps.length; i++) {
+                        bitmaps[i] = renders.get(i).call();
+                    }
+                } finally {
+                    // Renders left over by a failure do not read the bitmap anymore
+                    for (Callable<Bitmap> render : renders) {
+                        CropSnapshot.unpin(render);
+                    }
+                }
+                return bitmaps;
+            }
+        };
+    }
+
+    private OriginalSource requireOriginalSource() {
+        final OriginalSource source = originalSource != null ? originalSource : cropView.getOriginalSource();
+        if (source == null) {
+            throw new IllegalStateException("No original to crop from, load one using CropView.Extensions or call fromOriginal(model).");
+        }
+        return source;
+    }
+}
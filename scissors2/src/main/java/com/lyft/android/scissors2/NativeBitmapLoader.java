@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link BitmapLoader} decoding images with {@link BitmapFactory} alone, sampled down to the size they are displayed at.
+ * <p>
+ * Bounds are read first, so that the image is decoded with the largest {@link BitmapFactory.Options#inSampleSize} which still
+ * fills the viewport, into a bitmap reused from the {@link CropView} pool where possible. EXIF orientations are handed to
+ * {@link CropView#setImageBitmap(Bitmap, int)} rather than applied to pixels. Decoding runs in the background and only the
+ * latest load of a loader is ever delivered.
+ * <p>
+ * The bitmap is only as large as the viewport at minimum scale, whatever {@link CropViewConfig#getMaxScale()}. Zooming in
+ * past it stays sharp thanks to the tiles of the original the {@link CropView} decodes for the visible area, see
+ * {@link CropView#setTileCacheSize(long)}, instead of holding the whole image at maximum scale.
+ *
+ * @see NativeBitmapLoader#createUsing(CropView)
+ */
+public class NativeBitmapLoader implements BitmapLoader {
+
+    private static final String TAG = "scissors.NativeLoader";
+
+    private final Context context;
+    private final int viewportWidth;
+    private final int viewportHeight;
+    private final @CropView.DisplayConfig int displayConfig;
+    private final BitmapPool pool;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Future<?> pending;
+    private int generation;
+
+    NativeBitmapLoader(Context context, int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig,
+            @Nullable BitmapPool pool, Executor executor) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.displayConfig = displayConfig;
+        this.pool = pool;
+        this.executor = executor;
+    }
+
+    @Override
+    public void load(@Nullable final Object model, @NonNull final ImageView imageView) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        final int loadGeneration = ++generation;
+        if (model == null) {
+            pending = null;
+            imageView.setImageBitmap(null);
+            return;
+        }
+
+        final OriginalSource source = new OriginalSource(context, model);
+        final CropMetrics metrics = CropMetrics.forLoad(imageView);
+        pending = Utils.submit(executor, CropRequest.Priority.HIGH, "NativeBitmapLoader.load", new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = null;
+                int orientation = Orientation.NORMAL;
+                try {
+                    final long start = metrics != null ? System.nanoTime() : 0;
+                    orientation = source.getOrientation();
+                    bitmap = decode(source, orientation);
+                    if (metrics != null) {
+                        CropMetrics.report(metrics, CropMetrics.Stage.DECODE, System.nanoTime() - start, bitmap, -1,
+                                NativeBitmapLoader.this);
+                    }
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to load " + model, throwable);
+                    }
+                }
+                deliver(bitmap, orientation, imageView, loadGeneration);
+            }
+        });
+    }
+
+    private void deliver(final Bitmap bitmap, final int orientation, final ImageView imageView, final int loadGeneration) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (loadGeneration != generation) {
+                    if (bitmap != null) {
+                        Utils.recycle(bitmap);
+                    }
+                    return;
+                }
+                pending = null;
+                if (bitmap != null && imageView instanceof CropView) {
+                    ((CropView) imageView).setImageBitmap(bitmap, orientation);
+                } else if (bitmap != null) {
+                    imageView.setImageBitmap(bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The image sampled and scaled so that, once shown in given orientation, it fills the viewport.
+     */
+    private Bitmap decode(OriginalSource source, int orientation) throws IOException {
+        CropTrace.begin("NativeBitmapLoader.decode");
+        try {
+            return decodeSampled(source, orientation);
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    private Bitmap decodeSampled(OriginalSource source, int orientation) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(source, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode bounds of " + source.getModel());
+        }
+
+        // Size as stored, so a transposed image fills the viewport turned sideways. Zoomed in detail comes from tiles instead.
+        final boolean transposed = Orientation.isTransposed(orientation);
+        final Rect target = CropViewExtensions.computeTargetSize(options.outWidth, options.outHeight,
+                transposed ? viewportHeight : viewportWidth, transposed ? viewportWidth : viewportHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = OriginalSource.computeSampleSize(options.outWidth, options.outHeight, target.width(),
+                target.height());
+        // JPEGs are opaque, so they can be decoded straight into the smaller display config
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType)
+                ? displayConfig(false)
+                : Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && pool != null) {
+            // Sampled sizes are rounded up by some decoders, reuse only needs a large enough allocation as of KitKat
+            options.inBitmap = pool.get(OriginalSource.ceilDiv(options.outWidth, options.inSampleSize),
+                    OriginalSource.ceilDiv(options.outHeight, options.inSampleSize), options.inPreferredConfig);
+        }
+
+        Bitmap decoded;
+        try {
+            decoded = decodeStream(source, options);
+        } catch (IllegalArgumentException e) {
+            // Reused bitmap rejected by the decoder
+            options.inBitmap = null;
+            decoded = decodeStream(source, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + source.getModel());
+        }
+
+        final Bitmap result = Utils.scaleForDisplay(decoded, target.width(), target.height(), displayConfig);
+        if (result != decoded) {
+            Utils.release(pool, decoded);
+        }
+        return result;
+    }
+
+    private Bitmap.Config displayConfig(boolean hasAlpha) {
+        final Bitmap.Config config = Utils.displayConfig(displayConfig, hasAlpha);
+        return config == null || config == Utils.hardwareConfig() ? Bitmap.Config.ARGB_8888 : config;
+    }
+
+    private static Bitmap decodeStream(OriginalSource source, BitmapFactory.Options options) throws IOException {
+        final InputStream inputStream = source.open();
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            Utils.closeQuietly(inputStream);
+        }
+    }
+
+    public static BitmapLoader createUsing(@NonNull CropView cropView) {
+        return createUsing(cropView, Utils.defaultExecutor());
+    }
+
+    public static BitmapLoader createUsing(@NonNull CropView cropView, @NonNull Executor executor) {
+        Utils.checkNotNull(executor, "executor == null");
+        return new NativeBitmapLoader(cropView.getContext(), cropView.getViewportWidth(), cropView.getViewportHeight(),
+                cropView.getDisplayConfig(), cropView.getBitmapPool(), executor);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Original, full resolution, image behind the (usually downscaled) bitmap displayed by {@link CropView}.
+ * <p>
+ * Pixels are only ever decoded for a region of the original by means of a {@link BitmapRegionDecoder}, so that the whole
+ * original never has to be held in memory. Regions are expressed in coordinates of the original shown upright, as given by
+ * its EXIF orientation, and decoded upright.
+ */
+class OriginalSource {
+
+    private final Context context;
+    private final Object model;
+    private volatile int orientation;
+
+    OriginalSource(@NonNull Context context, @NonNull Object model) {
+        Utils.checkNotNull(context, "context == null");
+        Utils.checkNotNull(model, "model == null");
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.model = model;
+    }
+
+    Object getModel() {
+        return model;
+    }
+
+    InputStream open() throws IOException {
+        if (model instanceof Uri) {
+            return openUri((Uri) model);
+        } else if (model instanceof File) {
+            return new FileInputStream((File) model);
+        } else if (model instanceof String) {
+            final String path = (String) model;
+            return path.contains("://") ? openUri(Uri.parse(path)) : new FileInputStream(path);
+        } else if (model instanceof Integer) {
+            return context.getResources().openRawResource((Integer) model);
+        }
+        throw new IllegalArgumentException("Unsupported model " + model);
+    }
+
+    private InputStream openUri(Uri uri) throws IOException {
+        final InputStream inputStream = context.getContentResolver().openInputStream(uri);
+        if (inputStream == null) {
+            throw new IOException("Unable to open " + uri);
+        }
+        return inputStream;
+    }
+
+    /**
+     * @return EXIF orientation of the original, read on first call, see {@link Orientation}.
+     */
+    int getOrientation() {
+        if (orientation == 0) {
+            orientation = Orientation.sanitize(readOrientation());
+        }
+        return orientation;
+    }
+
+    private int readOrientation() {
+        try {
+            final String path = model instanceof File ? ((File) model).getAbsolutePath()
+                    : model instanceof String && !((String) model).contains("://") ? (String) model
+                    : null;
+            if (path != null) {
+                return new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION, Orientation.NORMAL);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                final InputStream inputStream = open();
+                try {
+                    return new ExifInterface(inputStream).getAttributeInt(ExifInterface.TAG_ORIENTATION, Orientation.NORMAL);
+                } finally {
+                    Utils.closeQuietly(inputStream);
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Missing or unreadable EXIF, shown as stored
+        }
+        return Orientation.NORMAL;
+    }
+
+    BitmapRegionDecoder newRegionDecoder() throws IOException {
+        final InputStream inputStream = open();
+        try {
+            return BitmapRegionDecoder.newInstance(inputStream, false);
+        } finally {
+            Utils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Decodes the part of the original matching {@code bitmapRect}, a region expressed in coordinates of a
+     * {@code bitmapWidth x bitmapHeight} downscaled version of it.
+     *
+     * @return The region at full resolution, or scaled to {@code outputSize} sampling the original as coarsely as possible.
+     */
+    Bitmap decodeRegion(RectF bitmapRect, int bitmapWidth, int bitmapHeight, OutputSize outputSize, @Nullable BitmapPool pool)
+            throws IOException {
+        final int orientation = getOrientation();
+        final BitmapRegionDecoder decoder = newRegionDecoder();
+        try {
+            final Rect upright = new Rect();
+            mapToSource(bitmapRect, bitmapWidth, bitmapHeight, uprightWidth(decoder), uprightHeight(decoder), upright);
+            final Rect output = outputSize.resolve(upright.width(), upright.height());
+            final Rect region = new Rect();
+            mapFromUpright(upright, orientation, decoder.getWidth(), decoder.getHeight(), region);
+
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inSampleSize = computeSampleSize(upright.width(), upright.height(), output.width(), output.height());
+            final Bitmap decoded = decoder.decodeRegion(region, options);
+            if (decoded == null) {
+                throw new IOException("Unable to decode " + region);
+            }
+            if (orientation == Orientation.NORMAL
+                    && decoded.getWidth() == output.width() && decoded.getHeight() == output.height()) {
+                return decoded;
+            }
+
+            final Bitmap dst = Utils.obtainBitmap(pool, output.width(), output.height(), Bitmap.Config.ARGB_8888);
+            final Matrix matrix = new Matrix();
+            setUprightTransform(matrix, orientation, 0, 0, decoded.getWidth(), decoded.getHeight(), output.width(),
+                    output.height());
+            final Canvas canvas = new Canvas(dst);
+            canvas.drawBitmap(decoded, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+            decoded.recycle();
+            return dst;
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Decodes the parts of the original matching each of {@code bitmapRects}, see
+     * {@link #decodeRegion(RectF, int, int, OutputSize, BitmapPool)}. A single decode of the region covering all of them is shared
+     * as long as it takes no more than {@code maxMemory} bytes, else each region is decoded on its own, one after the other.
+     *
+     * @param maxMemory Bytes the shared decode may take, or 0 for as many as decoding the largest region on its own, which
+     * only lets regions mostly overlapping share it.
+     * @return One bitmap per region, in the same order.
+     */
+    Bitmap[] decodeRegions(RectF[] bitmapRects, int bitmapWidth, int bitmapHeight, OutputSize outputSize, long maxMemory,
+            @Nullable BitmapPool pool) throws IOException {
+        final Bitmap[] bitmaps = new Bitmap[bitmapRects.length];
+        final int orientation = getOrientation();
+        final BitmapRegionDecoder decoder = newRegionDecoder();
+        Bitmap decoded = null;
+        try {
+            final Rect[] regions = new Rect[bitmapRects.length];
+            final Rect[] outputs = new Rect[bitmapRects.length];
+            final int[] sampleSizes = new int[bitmapRects.length];
+            final Rect upright = new Rect();
+            final Rect union = new Rect();
+            int unionSampleSize = Integer.MAX_VALUE;
+            long largestByteCount = 0;
+            for (int i = 0; i < bitmapRects.length; i++) {
+                mapToSource(bitmapRects[i], bitmapWidth, bitmapHeight, uprightWidth(decoder), uprightHeight(decoder), upright);
+                outputs[i] = outputSize.resolve(upright.width(), upright.height());
+                regions[i] = new Rect();
+                mapFromUpright(upright, orientation, decoder.getWidth(), decoder.getHeight(), regions[i]);
+                union.union(regions[i]);
+                sampleSizes[i] = computeSampleSize(upright.width(), upright.height(), outputs[i].width(), outputs[i].height());
+                unionSampleSize = Math.min(unionSampleSize, sampleSizes[i]);
+                largestByteCount = Math.max(largestByteCount, decodedByteCount(regions[i], sampleSizes[i]));
+            }
+
+            final Canvas canvas = new Canvas();
+            final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            final Matrix matrix = new Matrix();
+            if (decodedByteCount(union, unionSampleSize) <= (maxMemory > 0 ? maxMemory : largestByteCount)) {
+                decoded = decode(decoder, union, unionSampleSize);
+                for (int i = 0; i < bitmapRects.length; i++) {
+                    bitmaps[i] = draw(decoded, union, regions[i], orientation, outputs[i], pool, canvas, paint, matrix);
+                }
+            } else {
+                for (int i = 0; i < bitmapRects.length; i++) {
+                    decoded = decode(decoder, regions[i], sampleSizes[i]);
+                    bitmaps[i] = draw(decoded, regions[i], regions[i], orientation, outputs[i], pool, canvas, paint, matrix);
+                    decoded.recycle();
+                    decoded = null;
+                }
+            }
+            return bitmaps;
+        } catch (IOException | RuntimeException e) {
+            for (Bitmap bitmap : bitmaps) {
+                Utils.release(pool, bitmap);
+            }
+            throw e;
+        } finally {
+            if (decoded != null) {
+                decoded.recycle();
+            }
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * @return Bytes taken by {@code region} of the original decoded at {@code sampleSize}.
+     */
+    static long decodedByteCount(Rect region, int sampleSize) {
+        return (long) ceilDiv(region.width(), sampleSize) * ceilDiv(region.height(), sampleSize) * 4;
+    }
+
+    /**
+     * @return {@code size} divided by {@code divisor} rounded up, as decoders round sampled sizes.
+     */
+    static int ceilDiv(int size, int divisor) {
+        return (size + divisor - 1) / divisor;
+    }
+
+    private static Bitmap decode(BitmapRegionDecoder decoder, Rect region, int sampleSize) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inSampleSize = sampleSize;
+        final Bitmap decoded = decoder.decodeRegion(region, options);
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + region);
+        }
+        return decoded;
+    }
+
+    /**
+     * @return {@code region} of {@code decoded}, which holds {@code decodedRegion} of the original, drawn upright at the size of
+     * {@code output}.
+     */
+    private static Bitmap draw(Bitmap decoded, Rect decodedRegion, Rect region, int orientation, Rect output,
+            @Nullable BitmapPool pool, Canvas canvas, Paint paint, Matrix matrix) {
+        final float scaleX = (float) decoded.getWidth() / decodedRegion.width();
+        final float scaleY = (float) decoded.getHeight() / decodedRegion.height();
+        setUprightTransform(matrix, orientation,
+                (region.left - decodedRegion.left) * scaleX, (region.top - decodedRegion.top) * scaleY,
+                region.width() * scaleX, region.height() * scaleY,
+                output.width(), output.height());
+        final Bitmap bitmap = Utils.obtainBitmap(pool, output.width(), output.height(), Bitmap.Config.ARGB_8888);
+        canvas.setBitmap(bitmap);
+        canvas.drawBitmap(decoded, matrix, paint);
+        canvas.setBitmap(null);
+        return bitmap;
+    }
+
+    /**
+     * @return Largest power of two sample size which still decodes at least {@code dstWidth x dstHeight} pixels.
+     */
+    static int computeSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= dstWidth && srcHeight / (sampleSize * 2) >= dstHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private int uprightWidth(BitmapRegionDecoder decoder) {
+        return Orientation.getUprightWidth(getOrientation(), decoder.getWidth(), decoder.getHeight());
+    }
+
+    private int uprightHeight(BitmapRegionDecoder decoder) {
+        return Orientation.getUprightHeight(getOrientation(), decoder.getWidth(), decoder.getHeight());
+    }
+
+    /**
+     * Maps a region of a {@code sourceWidth x sourceHeight} source shown upright back to the source as stored in given
+     * orientation.
+     */
+    static void mapFromUpright(Rect upright, int orientation, int sourceWidth, int sourceHeight, Rect out) {
+        final float[] rect = { upright.left, upright.top, upright.right, upright.bottom };
+        Orientation.mapRectFromUpright(orientation, sourceWidth, sourceHeight, rect);
+        out.set((int) rect[0], (int) rect[1], (int) rect[2], (int) rect[3]);
+    }
+
+    /**
+     * Sets {@code matrix} to draw the {@code srcWidth x srcHeight} part at {@code left, top} of a bitmap decoded in given
+     * orientation upright into a {@code dstWidth x dstHeight} bitmap.
+     */
+    static void setUprightTransform(Matrix matrix, int orientation, float left, float top, float srcWidth, float srcHeight,
+            float dstWidth, float dstHeight) {
+        matrix.setTranslate(-left, -top);
+        Utils.applyOrientation(matrix, orientation, srcWidth, srcHeight);
+        final boolean transposed = Orientation.isTransposed(orientation);
+        matrix.postScale(dstWidth / (transposed ? srcHeight : srcWidth), dstHeight / (transposed ? srcWidth : srcHeight));
+    }
+
+    /**
+     * Scales a region of a {@code bitmapWidth x bitmapHeight} bitmap up to the matching region of a
+     * {@code sourceWidth x sourceHeight} source, clamped to the source bounds.
+     */
+    static void mapToSource(RectF bitmapRect, int bitmapWidth, int bitmapHeight, int sourceWidth, int sourceHeight, Rect out) {
+        final float scaleX = (float) sourceWidth / bitmapWidth;
+        final float scaleY = (float) sourceHeight / bitmapHeight;
+
+        out.left = Math.max(0, Math.round(bitmapRect.left * scaleX));
+        out.top = Math.max(0, Math.round(bitmapRect.top * scaleY));
+        out.right = Math.min(sourceWidth, Math.round(bitmapRect.right * scaleX));
+        out.bottom = Math.min(sourceHeight, Math.round(bitmapRect.bottom * scaleY));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Rect;
+
+/**
+ * Size of a cropped bitmap, either exact or bounded, resolved against the size of the crop itself.
+ */
+class OutputSize {
+
+    /** Crop size, that is viewport size or region size when cropping from the original. */
+    static final OutputSize ORIGINAL = new OutputSize(0, 0, false);
+
+    private final int width;
+    private final int height;
+    private final boolean bounded;
+
+    private OutputSize(int width, int height, boolean bounded) {
+        this.width = width;
+        this.height = height;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @return Size scaling the crop to exactly {@code width x height}, stretching it if the aspect ratios differ.
+     */
+    static OutputSize exactly(int width, int height) {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be > 0");
+        return new OutputSize(width, height, false);
+    }
+
+    /**
+     * @return Size scaling the crop down, keeping its aspect ratio, until it fits within {@code maxWidth x maxHeight}.
+     */
+    static OutputSize atMost(int maxWidth, int maxHeight) {
+        Utils.checkArg(maxWidth > 0 && maxHeight > 0, "maxWidth and maxHeight must be > 0");
+        return new OutputSize(maxWidth, maxHeight, true);
+    }
+
+    /**
+     * @return Output size for a crop of {@code cropWidth x cropHeight}.
+     */
+    Rect resolve(int cropWidth, int cropHeight) {
+        if (width == 0 || height == 0) {
+            return new Rect(0, 0, cropWidth, cropHeight);
+        }
+        if (!bounded) {
+            return new Rect(0, 0, width, height);
+        }
+        if (cropWidth <= width && cropHeight <= height) {
+            return new Rect(0, 0, cropWidth, cropHeight);
+        }
+        final float scale = Math.min((float) width / cropWidth, (float) height / cropHeight);
+        return new Rect(0, 0,
+                Math.max(1, Math.min(width, Math.round(cropWidth * scale))),
+                Math.max(1, Math.min(height, Math.round(cropHeight * scale))));
+    }
+}
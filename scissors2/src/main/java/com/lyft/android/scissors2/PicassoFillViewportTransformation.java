@@ -23,37 +23,48 @@ class PicassoFillViewportTransformation implements Transformation {
 
     private final int viewportWidth;
     private final int viewportHeight;
+    private final @CropView.DisplayConfig int displayConfig;
 
-    public PicassoFillViewportTransformation(int viewportWidth, int viewportHeight) {
+    public PicassoFillViewportTransformation(int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig) {
         this.viewportWidth = viewportWidth;
         this.viewportHeight = viewportHeight;
+        this.displayConfig = displayConfig;
     }
 
     @Override
     public Bitmap transform(Bitmap source) {
-        int sourceWidth = source.getWidth();
-        int sourceHeight = source.getHeight();
-
-        Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
-        final Bitmap result = Bitmap.createScaledBitmap(
-                source,
-                target.width(),
-                target.height(),
-                true);
-
-        if (result != source) {
-            source.recycle();
-        }
+        CropTrace.begin("PicassoFillViewportTransformation.transform");
+        try {
+            int sourceWidth = source.getWidth();
+            int sourceHeight = source.getHeight();
+
+            Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+            final Bitmap result = Utils.scaleForDisplay(
+                    source,
+                    target.width(),
+                    target.height(),
+                    displayConfig);
+
+            if (result != source) {
+                Utils.recycle(source);
+            }
 
-        return result;
+            return result;
+        } finally {
+            CropTrace.end();
+        }
     }
 
     @Override
     public String key() {
-        return viewportWidth + "x" + viewportHeight;
+        return viewportWidth + "x" + viewportHeight + "/" + displayConfig;
     }
 
     public static Transformation createUsing(int viewportWidth, int viewportHeight) {
-        return new PicassoFillViewportTransformation(viewportWidth, viewportHeight);
+        return createUsing(viewportWidth, viewportHeight, CropViewConfig.DEFAULT_DISPLAY_CONFIG);
+    }
+
+    public static Transformation createUsing(int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig) {
+        return new PicassoFillViewportTransformation(viewportWidth, viewportHeight, displayConfig);
     }
 }
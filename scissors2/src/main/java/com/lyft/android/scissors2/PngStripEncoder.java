@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming PNG encoder writing 8 bit RGBA, each row filtered with the "Sub" filter and deflated into IDAT chunks as it comes.
+ */
+class PngStripEncoder extends StripEncoder {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private final byte[] row;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final byte[] header = new byte[8];
+
+    PngStripEncoder(int width, int height, OutputStream outputStream) {
+        super(width, height, outputStream);
+        row = new byte[1 + width * 4];
+    }
+
+    @Override
+    long bufferSize(int stripHeight) {
+        return row.length + chunk.length;
+    }
+
+    @Override
+    int rowAlignment() {
+        return 1;
+    }
+
+    @Override
+    void writeHeader() throws IOException {
+        outputStream.write(SIGNATURE);
+
+        final byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = 8; // bit depth
+        ihdr[9] = 6; // color type RGBA
+        ihdr[10] = 0; // deflate
+        ihdr[11] = 0; // adaptive filtering
+        ihdr[12] = 0; // no interlace
+        writeChunk("IHDR", ihdr, ihdr.length);
+    }
+
+    @Override
+    void encodeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        for (int y = 0; y < rows; y++) {
+            final int start = offset + y * stride;
+            row[0] = 1; // Sub filter
+            int previous = 0;
+            for (int x = 0, i = 1; x < width; x++, i += 4) {
+                final int argb = pixels[start + x];
+                row[i] = (byte) ((argb >> 16) - (previous >> 16));
+                row[i + 1] = (byte) ((argb >> 8) - (previous >> 8));
+                row[i + 2] = (byte) (argb - previous);
+                row[i + 3] = (byte) ((argb >>> 24) - (previous >>> 24));
+                previous = argb;
+            }
+            deflater.setInput(row);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+    }
+
+    @Override
+    void writeTrailer() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        writeChunk("IEND", chunk, 0);
+    }
+
+    @Override
+    void release() {
+        deflater.end();
+    }
+
+    private void deflate() throws IOException {
+        final int length = deflater.deflate(chunk);
+        if (length > 0) {
+            writeChunk("IDAT", chunk, length);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        crc.reset();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+
+        outputStream.write(header);
+        outputStream.write(data, 0, length);
+        putInt(header, 0, (int) crc.getValue());
+        outputStream.write(header, 0, 4);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
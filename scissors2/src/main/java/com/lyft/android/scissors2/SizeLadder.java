@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes one crop at several sizes, each level downscaled by halves from the previous one and encoded as soon as it is ready.
+ */
+class SizeLadder {
+
+    private static final String TAG = "scissors.SizeLadder";
+
+    private final Callable<Bitmap> bitmapSource;
+    private final int[] sizes;
+    private final CropOutput[] outputs;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final BitmapPool pool;
+    private final Executor executor;
+    private final int priority;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Canvas canvas = new Canvas();
+    private final Completion completion;
+
+    /**
+     * @param bitmapSource Produces the crop at {@code sizes[0]} at most.
+     * @param sizes Maximum width and height of each level, strictly decreasing.
+     */
+    private SizeLadder(Callable<Bitmap> bitmapSource, int[] sizes, CropOutput[] outputs, Bitmap.CompressFormat format, int quality,
+            @Nullable BitmapPool pool, Executor executor, int priority) {
+        this.bitmapSource = bitmapSource;
+        this.sizes = sizes;
+        this.outputs = outputs;
+        this.format = format;
+        this.quality = quality;
+        this.pool = pool;
+        this.executor = executor;
+        this.priority = priority;
+        this.completion = new Completion(sizes.length);
+    }
+
+    /**
+     * Renders the crop produced by {@code bitmapSource} on {@code executor}, then downscales and encodes each level concurrently.
+     *
+     * @return A {@link Future} done once every level has been written or abandoned, failing with the first failure if any.
+     */
+    static Future<Void> flush(Callable<Bitmap> bitmapSource,
+            int[] sizes,
+            CropOutput[] outputs,
+            Bitmap.CompressFormat format,
+            int quality,
+            @Nullable BitmapPool pool,
+            Executor executor,
+            @CropRequest.Priority int priority) {
+
+        final SizeLadder ladder = new SizeLadder(bitmapSource, sizes, outputs, format, quality, pool, executor, priority);
+        Utils.submit(executor, priority, "SizeLadder.render", new Runnable() {
+            @Override
+            public void run() {
+                ladder.render();
+            }
+        });
+        return ladder.completion;
+    }
+
+    private void render() {
+        int submitted = 0;
+        Level previous = null;
+        try {
+            if (completion.isCancelled()) {
+                return;
+            }
+
+            final Bitmap top = bitmapSource.call();
+            previous = new Level(top, sizes.length > 1 ? 2 : 1);
+            encode(previous, 0);
+            submitted++;
+
+            for (int i = 1; i < sizes.length && !completion.isCancelled(); i++) {
+                final Rect size = OutputSize.atMost(sizes[i], sizes[i]).resolve(top.getWidth(), top.getHeight());
+                final int references = i < sizes.length - 1 ? 2 : 1;
+                final Bitmap bitmap = downscale(previous.bitmap, size.width(), size.height());
+
+                final Level level;
+                if (bitmap == previous.bitmap) {
+                    previous.retain(references);
+                    level = previous;
+                } else {
+                    level = new Level(bitmap, references);
+                }
+                encode(level, i);
+                submitted++;
+
+                previous.release();
+                previous = level;
+            }
+        } catch (final Throwable throwable) {
+            if (BuildConfig.DEBUG) {
+                Log.e(TAG, "Error attempting to save bitmap.", throwable);
+            }
+            completion.fail(throwable);
+        } finally {
+            if (previous != null && submitted < sizes.length) {
+                // Still referenced as the source of the next level
+                previous.release();
+            }
+            for (int i = submitted; i < sizes.length; i++) {
+                outputs[i].abandon();
+                completion.countDown();
+            }
+        }
+    }
+
+    /**
+     * @return {@code src} halved as many times as possible, then scaled to {@code width x height} if still required.
+     */
+    private Bitmap downscale(Bitmap src, int width, int height) {
+        Bitmap current = src;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            final Bitmap half = scale(current, current.getWidth() / 2, current.getHeight() / 2);
+            if (current != src) {
+                Utils.release(pool, current);
+            }
+            current = half;
+        }
+        if (current.getWidth() == width && current.getHeight() == height) {
+            return current;
+        }
+
+        final Bitmap scaled = scale(current, width, height);
+        if (current != src) {
+            Utils.release(pool, current);
+        }
+        return scaled;
+    }
+
+    private Bitmap scale(Bitmap src, int width, int height) {
+        final Bitmap.Config config = src.getConfig() != null ? src.getConfig() : Bitmap.Config.ARGB_8888;
+        final Bitmap dst = Utils.obtainBitmap(pool, width, height, config);
+        canvas.setBitmap(dst);
+        canvas.save();
+        canvas.scale((float) width / src.getWidth(), (float) height / src.getHeight());
+        canvas.drawBitmap(src, 0, 0, paint);
+        canvas.restore();
+        canvas.setBitmap(null);
+        return dst;
+    }
+
+    private void encode(final Level level, final int index) {
+        Utils.submit(executor, priority, "SizeLadder.encode", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (completion.isCancelled()) {
+                        outputs[index].abandon();
+                    } else {
+                        outputs[index].write(level.bitmap, format, quality);
+                    }
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to save bitmap.", throwable);
+                    }
+                    completion.fail(throwable);
+                } finally {
+                    level.release();
+                    completion.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * A bitmap shared between its encode and the downscale to the next level, returned to the pool once both are done.
+     */
+    private class Level {
+
+        final Bitmap bitmap;
+        private final AtomicInteger references;
+
+        Level(Bitmap bitmap, int references) {
+            this.bitmap = bitmap;
+            this.references = new AtomicInteger(references);
+        }
+
+        void retain(int count) {
+            references.addAndGet(count);
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                Utils.release(pool, bitmap);
+            }
+        }
+    }
+
+    /**
+     * Done once every level has been written, without ever blocking a thread of the executor, and failing with the first
+     * failure if any.
+     */
+    private static class Completion extends FutureTask<Void> {
+
+        private static final Runnable DONE = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        private final AtomicInteger pending;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Completion(int count) {
+            super(DONE, null);
+            this.pending = new AtomicInteger(count);
+        }
+
+        /**
+         * Remembers {@code throwable} to fail with, unless an earlier level failed already.
+         */
+        void fail(Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+        }
+
+        void countDown() {
+            if (pending.decrementAndGet() == 0) {
+                if (failure.get() != null) {
+                    setException(failure.get());
+                } else {
+                    run();
+                }
+            }
+        }
+    }
+}
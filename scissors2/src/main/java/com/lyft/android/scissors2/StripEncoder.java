@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes an image handed over as consecutive strips of rows, so that the whole image never has to be held in memory.
+ * <p>
+ * Rows are given as packed ARGB {@code int}s, as returned by {@link Bitmap#getPixels}.
+ */
+abstract class StripEncoder {
+
+    final int width;
+    final int height;
+    final OutputStream outputStream;
+    private int rowsWritten;
+
+    StripEncoder(int width, int height, OutputStream outputStream) {
+        Utils.checkArg(width > 0 && height > 0, "width and height must be > 0");
+        Utils.checkNotNull(outputStream, "outputStream == null");
+        this.width = width;
+        this.height = height;
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Encodes the next {@code rows} rows of the image.
+     *
+     * @param pixels Packed ARGB pixels.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Number of pixels between the start of two consecutive rows.
+     */
+    final void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        Utils.checkArg(rows > 0 && rowsWritten + rows <= height, "rows exceed image height");
+        if (rowsWritten == 0) {
+            writeHeader();
+        }
+        encodeRows(pixels, offset, stride, rows);
+        rowsWritten += rows;
+        if (rowsWritten == height) {
+            writeTrailer();
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * @return Bytes held by this encoder for a strip of {@code stripHeight} rows, in addition to the strip itself.
+     */
+    abstract long bufferSize(int stripHeight);
+
+    /**
+     * @return Preferred multiple of rows for each strip.
+     */
+    abstract int rowAlignment();
+
+    abstract void writeHeader() throws IOException;
+
+    abstract void encodeRows(int[] pixels, int offset, int stride, int rows) throws IOException;
+
+    abstract void writeTrailer() throws IOException;
+
+    /**
+     * Frees native memory held by this encoder. Must be called once encoding is over, whether it completed or failed.
+     */
+    void release() {
+    }
+
+    static boolean supports(Bitmap.CompressFormat format) {
+        return format == Bitmap.CompressFormat.JPEG || format == Bitmap.CompressFormat.PNG;
+    }
+
+    static StripEncoder create(Bitmap.CompressFormat format, int width, int height, int quality,
+            OutputStream outputStream) {
+        switch (format) {
+            case JPEG:
+                return new JpegStripEncoder(width, height, quality, outputStream);
+            case PNG:
+                return new PngStripEncoder(width, height, outputStream);
+            default:
+                throw new IllegalArgumentException("Unsupported format for strip encoding " + format);
+        }
+    }
+}
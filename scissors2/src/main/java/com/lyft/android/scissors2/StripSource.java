@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.IOException;
+
+/**
+ * Renders a crop one horizontal strip at a time, see {@link CropRequest#maxMemory(long)}.
+ */
+abstract class StripSource {
+
+    private final Canvas canvas = new Canvas();
+
+    /**
+     * Prepares this source, called from the background thread before any other method.
+     */
+    void open() throws IOException {
+    }
+
+    abstract int getWidth();
+
+    abstract int getHeight();
+
+    /**
+     * @return Bytes held while drawing, for each row of a strip.
+     */
+    long bufferSizePerRow() {
+        return 0;
+    }
+
+    /**
+     * Draws the crop rows starting at {@code top} into {@code strip}, which is as wide as the crop.
+     */
+    final void draw(Bitmap strip, int top) throws IOException {
+        canvas.setBitmap(strip);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        canvas.save();
+        onDraw(canvas, top, Math.min(strip.getHeight(), getHeight() - top));
+        canvas.restore();
+        canvas.setBitmap(null);
+    }
+
+    abstract void onDraw(Canvas canvas, int top, int rows) throws IOException;
+
+    void close() {
+    }
+
+    /**
+     * Strips of a bitmap drawn through {@code transform}, which maps it into crop coordinates. Hardware bitmaps are drawn from
+     * a software copy.
+     */
+    static StripSource of(final Bitmap bitmap, final Matrix transform, final int width, final int height) {
+        final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        return new StripSource() {
+            private Bitmap source = bitmap;
+
+            @Override
+            void open() throws IOException {
+                if (Utils.isHardware(bitmap)) {
+                    source = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+                    if (source == null) {
+                        throw new IOException("Unable to read back hardware bitmap.");
+                    }
+                }
+            }
+
+            @Override
+            void close() {
+                if (source != bitmap && source != null) {
+                    source.recycle();
+                }
+                source = bitmap;
+                CropSnapshot.unpin(this);
+            }
+
+            @Override
+            int getWidth() {
+                return width;
+            }
+
+            @Override
+            int getHeight() {
+                return height;
+            }
+
+            @Override
+            void onDraw(Canvas canvas, int top, int rows) {
+                canvas.translate(0, -top);
+                canvas.drawBitmap(source, transform, paint);
+            }
+        };
+    }
+
+    /**
+     * Strips of the full resolution region of {@code source} matching {@code bitmapRect} scaled to {@code outputSize}, see
+     * {@link OriginalSource#decodeRegion(RectF, int, int, OutputSize, BitmapPool)}. Each strip is decoded on its own.
+     */
+    static StripSource of(final OriginalSource source, final RectF bitmapRect, final int bitmapWidth, final int bitmapHeight,
+            final OutputSize outputSize) {
+        return new StripSource() {
+            private final Rect region = new Rect();
+            private final Rect uprightStrip = new Rect();
+            private final Rect stripRegion = new Rect();
+            private final Matrix matrix = new Matrix();
+            private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            private final BitmapFactory.Options options = new BitmapFactory.Options();
+            private BitmapRegionDecoder decoder;
+            private int orientation;
+            private Rect output;
+            private float scaleX;
+            private float scaleY;
+
+            @Override
+            void open() throws IOException {
+                orientation = source.getOrientation();
+                decoder = source.newRegionDecoder();
+                // Region of the source shown upright, mapped back to the source as stored strip by strip
+                OriginalSource.mapToSource(bitmapRect, bitmapWidth, bitmapHeight,
+                        Orientation.getUprightWidth(orientation, decoder.getWidth(), decoder.getHeight()),
+                        Orientation.getUprightHeight(orientation, decoder.getWidth(), decoder.getHeight()), region);
+                output = outputSize.resolve(region.width(), region.height());
+                scaleX = (float) output.width() / region.width();
+                scaleY = (float) output.height() / region.height();
+                options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+                options.inSampleSize = OriginalSource.computeSampleSize(region.width(), region.height(),
+                        output.width(), output.height());
+            }
+
+            @Override
+            int getWidth() {
+                return output.width();
+            }
+
+            @Override
+            int getHeight() {
+                return output.height();
+            }
+
+            @Override
+            long bufferSizePerRow() {
+                // Source rows decoded for each output row
+                return (long) Math.ceil(region.width() * 4L / (scaleY * options.inSampleSize * options.inSampleSize));
+            }
+
+            @Override
+            void onDraw(Canvas canvas, int top, int rows) throws IOException {
+                // One extra source row on each side so filtering does not show seams between strips
+                final int sourceTop = Math.max(region.top, region.top + (int) Math.floor(top / scaleY) - 1);
+                final int sourceBottom = Math.min(region.bottom, region.top + (int) Math.ceil((top + rows) / scaleY) + 1);
+                uprightStrip.set(region.left, sourceTop, region.right, sourceBottom);
+                OriginalSource.mapFromUpright(uprightStrip, orientation, decoder.getWidth(), decoder.getHeight(), stripRegion);
+                final Bitmap decoded = decoder.decodeRegion(stripRegion, options);
+                if (decoded == null) {
+                    throw new IOException("Unable to decode " + stripRegion);
+                }
+
+                OriginalSource.setUprightTransform(matrix, orientation, 0, 0, decoded.getWidth(), decoded.getHeight(),
+                        uprightStrip.width() * scaleX, uprightStrip.height() * scaleY);
+                matrix.postTranslate(0, (sourceTop - region.top) * scaleY - top);
+                canvas.drawBitmap(decoded, matrix, paint);
+                decoded.recycle();
+            }
+
+            @Override
+            void close() {
+                if (decoder != null) {
+                    decoder.recycle();
+                }
+            }
+        };
+    }
+}
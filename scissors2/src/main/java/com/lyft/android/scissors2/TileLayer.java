@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Sharp tiles of the original image drawn over the bitmap of {@link CropView} once zoomed past its resolution.
+ * <p>
+ * Only tiles covering the viewport are decoded, on demand and in the background, sampled to the current zoom. Decoded tiles
+ * are kept in a cache bounded in bytes, and tiles no longer visible by the time they would be decoded are dropped.
+ */
+class TileLayer {
+
+    private static final String TAG = "scissors.TileLayer";
+
+    /**
+     * Size of decoded tiles in pixels, whatever their sample size.
+     */
+    static final int TILE_SIZE = 256;
+
+    private final View view;
+    private final Executor executor;
+    private final LruCache<Tile, Bitmap> cache;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix inverse = new Matrix();
+    private final Matrix tileMatrix = new Matrix();
+    private final RectF visible = new RectF();
+    private final Rect tileRect = new Rect();
+    private final Tile lookup = new Tile(0, 0, 0);
+    private final List<Tile> missing = new ArrayList<>();
+    private int missingCount;
+
+    private final Object lock = new Object();
+    private ArrayList<Tile> queue = new ArrayList<>();
+    private ArrayList<Tile> nextQueue = new ArrayList<>();
+    private TileSource source;
+    private Tile decodingTile;
+    private boolean draining;
+
+    private int bitmapWidth;
+    private int bitmapHeight;
+
+    /**
+     * @param maxSize Maximum number of bytes held by decoded tiles.
+     */
+    TileLayer(View view, Executor executor, long maxSize) {
+        this.view = view;
+        this.executor = executor;
+        this.cache = new LruCache<Tile, Bitmap>((int) Math.min(Integer.MAX_VALUE, Math.max(1, maxSize))) {
+            @Override
+            protected int sizeOf(Tile key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Tiles from now on come from {@code originalSource}, the original of a displayed bitmap of given upright size.
+     */
+    void setSource(@Nullable OriginalSource originalSource, int bitmapWidth, int bitmapHeight) {
+        clear();
+        if (originalSource == null || bitmapWidth <= 0 || bitmapHeight <= 0) {
+            return;
+        }
+        this.bitmapWidth = bitmapWidth;
+        this.bitmapHeight = bitmapHeight;
+        synchronized (lock) {
+            source = new TileSource(originalSource);
+        }
+        // Opens the decoder ahead of the first zoom
+        drain();
+    }
+
+    /**
+     * Drops every tile and releases the original.
+     */
+    void clear() {
+        synchronized (lock) {
+            queue.clear();
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+        }
+        cache.evictAll();
+    }
+
+    /**
+     * Drops decoded tiles, keeping the original.
+     */
+    void trim() {
+        synchronized (lock) {
+            cache.evictAll();
+        }
+    }
+
+    int cachedTileCount() {
+        return cache.snapshot().size();
+    }
+
+    /**
+     * @return Number of bytes held by decoded tiles.
+     */
+    int cachedByteCount() {
+        return cache.size();
+    }
+
+    int queuedTileCount() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Draws the decoded tiles covering {@code viewport}, and queues the missing ones.
+     *
+     * @param uprightToView Maps the displayed bitmap shown upright into view coordinates.
+     * @param scale Scale of the displayed bitmap.
+     */
+    void draw(Canvas canvas, Matrix uprightToView, float scale, RectF viewport) {
+        final TileSource source = this.source;
+        if (source == null || !source.isOpen()) {
+            return;
+        }
+
+        final float sourceScale = (float) source.width / bitmapWidth;
+        if (Math.abs((float) source.height / bitmapHeight - sourceScale) > sourceScale * 0.01f) {
+            // Not the original of the displayed bitmap
+            return;
+        }
+        if (scale <= 1f || sourceScale <= 1f) {
+            // The displayed bitmap is as sharp as the screen allows
+            return;
+        }
+        final int sampleSize = sampleSizeFor(sourceScale / scale);
+        if (sampleSize >= sourceScale) {
+            return;
+        }
+
+        uprightToView.invert(inverse);
+        visible.set(viewport);
+        inverse.mapRect(visible);
+        final int tileSize = TILE_SIZE * sampleSize;
+        final int firstColumn = Math.max(0, (int) (visible.left * sourceScale) / tileSize);
+        final int firstRow = Math.max(0, (int) (visible.top * sourceScale) / tileSize);
+        final int lastColumn = Math.min((source.width - 1) / tileSize, (int) (visible.right * sourceScale) / tileSize);
+        final int lastRow = Math.min((source.height - 1) / tileSize, (int) (visible.bottom * sourceScale) / tileSize);
+
+        missingCount = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                lookup.set(sampleSize, column, row);
+                final Bitmap tile = cache.get(lookup);
+                if (tile == null) {
+                    addMissing(sampleSize, column, row);
+                    continue;
+                }
+
+                lookup.getUprightRect(source, tileRect);
+                OriginalSource.setUprightTransform(tileMatrix, source.orientation, 0, 0, tile.getWidth(), tile.getHeight(),
+                        tileRect.width() / sourceScale, tileRect.height() / sourceScale);
+                tileMatrix.postTranslate(tileRect.left / sourceScale, tileRect.top / sourceScale);
+                tileMatrix.postConcat(uprightToView);
+                canvas.drawBitmap(tile, tileMatrix, paint);
+            }
+        }
+        request(missing, missingCount);
+    }
+
+    /**
+     * Adds a tile to {@link #missing}, reusing the instances of previous frames.
+     */
+    private void addMissing(int sampleSize, int column, int row) {
+        if (missingCount == missing.size()) {
+            missing.add(new Tile(0, 0, 0));
+        }
+        missing.get(missingCount++).set(sampleSize, column, row);
+    }
+
+    /**
+     * @return Largest power of two sample size decoding at least one source pixel per screen pixel.
+     */
+    static int sampleSizeFor(float sourcePixelsPerScreenPixel) {
+        int sampleSize = 1;
+        while (sampleSize * 2 <= sourcePixelsPerScreenPixel) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Replaces queued tiles with the first {@code count} of {@code tiles}, dropping those out of view. Tiles already queued are
+     * kept as is, so that only newly visible ones are allocated.
+     */
+    private void request(List<Tile> tiles, int count) {
+        synchronized (lock) {
+            for (int i = 0; i < count; i++) {
+                final Tile tile = tiles.get(i);
+                if (tile.equals(decodingTile)) {
+                    continue;
+                }
+                final int queued = queue.indexOf(tile);
+                nextQueue.add(queued >= 0 ? queue.get(queued) : new Tile(tile.sampleSize, tile.column, tile.row));
+            }
+            final ArrayList<Tile> previous = queue;
+            queue = nextQueue;
+            nextQueue = previous;
+            nextQueue.clear();
+        }
+        if (count > 0) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        Utils.submit(executor, CropRequest.Priority.HIGH, "TileLayer.decode", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    decodeQueued();
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to decode tile.", throwable);
+                    }
+                    synchronized (lock) {
+                        draining = false;
+                        decodingTile = null;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes queued tiles until there are none left, then lets the next {@link #drain()} start over.
+     */
+    private void decodeQueued() throws IOException {
+        while (true) {
+            final TileSource source;
+            final Tile tile;
+            synchronized (lock) {
+                source = this.source;
+                tile = queue.isEmpty() ? null : queue.remove(0);
+                decodingTile = tile;
+                if (source == null || (tile == null && source.isOpen())) {
+                    // Along with seeing the queue empty, so that tiles queued from now on start another drain
+                    draining = false;
+                    return;
+                }
+            }
+
+            if (!source.isOpen()) {
+                if (!source.open()) {
+                    // Closed meanwhile, by now replaced or gone
+                    continue;
+                }
+                view.postInvalidate();
+            }
+            if (tile == null) {
+                continue;
+            }
+
+            final Bitmap bitmap = source.decode(tile);
+            synchronized (lock) {
+                if (bitmap == null || source != this.source) {
+                    continue;
+                }
+                // Cached right away, so that the tile is not queued again before the next frame
+                cache.put(tile, bitmap);
+            }
+            view.postInvalidate();
+        }
+    }
+
+    /**
+     * A tile of the original shown upright, {@link #TILE_SIZE} decoded pixels wide at given sample size.
+     */
+    private static class Tile {
+
+        private int sampleSize;
+        private int column;
+        private int row;
+
+        Tile(int sampleSize, int column, int row) {
+            set(sampleSize, column, row);
+        }
+
+        void set(int sampleSize, int column, int row) {
+            this.sampleSize = sampleSize;
+            this.column = column;
+            this.row = row;
+        }
+
+        void getUprightRect(TileSource source, Rect out) {
+            final int tileSize = TILE_SIZE * sampleSize;
+            out.set(column * tileSize, row * tileSize,
+                    Math.min(source.width, (column + 1) * tileSize), Math.min(source.height, (row + 1) * tileSize));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Tile) {
+                Tile other = (Tile) obj;
+                return other.sampleSize == sampleSize && other.column == column && other.row == row;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (sampleSize * 31 + column) * 31 + row;
+        }
+    }
+
+    /**
+     * Region decoder of an original, opened and used from the background only, and released once closed and idle.
+     */
+    private static class TileSource {
+
+        private final OriginalSource originalSource;
+        private final BitmapFactory.Options options = new BitmapFactory.Options();
+        private final Rect upright = new Rect();
+        private final Rect region = new Rect();
+        private BitmapRegionDecoder decoder;
+        private boolean decoding;
+        private boolean closed;
+
+        volatile int width;
+        volatile int height;
+        volatile int orientation;
+        private volatile boolean open;
+
+        TileSource(OriginalSource originalSource) {
+            this.originalSource = originalSource;
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * @return Whether the decoder is open, that is unless this source has been closed meanwhile.
+         */
+        boolean open() throws IOException {
+            final int orientation = originalSource.getOrientation();
+            final BitmapRegionDecoder decoder = originalSource.newRegionDecoder();
+            synchronized (this) {
+                if (closed) {
+                    decoder.recycle();
+                    return false;
+                }
+                this.decoder = decoder;
+            }
+            this.orientation = orientation;
+            this.width = Orientation.getUprightWidth(orientation, decoder.getWidth(), decoder.getHeight());
+            this.height = Orientation.getUprightHeight(orientation, decoder.getWidth(), decoder.getHeight());
+            this.open = true;
+            return true;
+        }
+
+        @Nullable
+        Bitmap decode(Tile tile) {
+            synchronized (this) {
+                if (closed || decoder == null) {
+                    return null;
+                }
+                decoding = true;
+            }
+            try {
+                tile.getUprightRect(this, upright);
+                OriginalSource.mapFromUpright(upright, orientation, decoder.getWidth(), decoder.getHeight(), region);
+                options.inSampleSize = tile.sampleSize;
+                return decoder.decodeRegion(region, options);
+            } finally {
+                synchronized (this) {
+                    decoding = false;
+                    if (closed) {
+                        decoder.recycle();
+                    }
+                }
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (!decoding && decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+}
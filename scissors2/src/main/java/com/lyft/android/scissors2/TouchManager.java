@@ -15,26 +15,22 @@
  */
 package com.lyft.android.scissors2;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.graphics.Matrix;
-import android.graphics.Rect;
 import android.os.Build;
-import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.animation.AccelerateDecelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
+import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 import android.widget.ImageView;
 import android.widget.OverScroller;
 
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
+import com.lyft.android.scissors2.geometry.CropState;
+import com.lyft.android.scissors2.geometry.Orientation;
 
 class TouchManager {
 
@@ -45,53 +41,33 @@ class TouchManager {
     private final ScaleGestureDetector scaleGestureDetector;
     private final GestureDetector gestureDetector;
 
-    private float minimumScale;
-    private float maximumScale;
-    private Rect imageBounds;
-    private float aspectRatio;
-    private int viewportWidth;
-    private int viewportHeight;
-    private int bitmapWidth;
-    private int bitmapHeight;
-
-    private int verticalLimit;
-    private int horizontalLimit;
-
-    private float scale = -1.0f;
-    private final TouchPoint position = new TouchPoint();
+    private final CropState state;
 
     private final ImageView imageView;
 
-    private final GestureAnimator gestureAnimator = new GestureAnimator(new GestureAnimator.OnAnimationUpdateListener() {
-        @Override
-        public void onAnimationUpdate(@GestureAnimator.AnimationType int animationType, float animationValue) {
-            if(animationType == GestureAnimator.ANIMATION_X) {
-                position.set(animationValue, position.getY());
-                ensureInsideViewport();
-            }
-            else if(animationType == GestureAnimator.ANIMATION_Y) {
-                position.set(position.getX(), animationValue);
-                ensureInsideViewport();
-            }
-            else if(animationType == GestureAnimator.ANIMATION_SCALE) {
-                scale = animationValue;
-                setLimits();
-            }
+    // Reused by every gesture, so that handling events allocates nothing
+    private final OverScroller scroller;
+    private final TouchPoint doubleTapPoint = new TouchPoint();
 
-            imageView.invalidate();
-        }
+    // Scale and position of the bitmap as last drawn, or about to be
+    private float drawnScale;
+    private float drawnX;
+    private float drawnY;
+    // Counts moves of the bitmap, so that whatever derives from its position is only computed again once it changed
+    private int revision;
 
-        @Override
-        public void onAnimationFinished() {
-            ensureInsideViewport();
-        }
-    });
+    private boolean touching;
+    // Whether frames were drawn while the bitmap moved, to be drawn again at full quality once it settles
+    private boolean movedWhileDrawing;
+    // Run rather than redrawing the view, see setMoveListener()
+    private Runnable moveListener;
+
+    private final GestureAnimator gestureAnimator = new GestureAnimator();
 
     private final ScaleGestureDetector.OnScaleGestureListener scaleGestureListener = new ScaleGestureDetector.OnScaleGestureListener() {
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
-            scale = calculateScale(detector.getScaleFactor());
-            setLimits();
+            state.scaleBy(detector.getScaleFactor());
             return true;
         }
 
@@ -111,9 +87,7 @@ class TouchManager {
                 return true;
             }
 
-            TouchPoint delta = new TouchPoint(-distanceX, -distanceY);
-            position.add(delta);
-            ensureInsideViewport();
+            state.translate(-distanceX, -distanceY);
             return true;
         }
 
@@ -133,18 +107,7 @@ class TouchManager {
                 return true;
             }
 
-            int width = (int) (imageBounds.right * scale);
-            int height = (int) (imageBounds.bottom * scale);
-
-            OverScroller scroller = new OverScroller(imageView.getContext());
-            scroller.fling((int) e1.getX(), (int) e1.getY(), (int) velocityX, (int) velocityY, -width, width, -height, height);
-
-            TouchPoint target = new TouchPoint(scroller.getFinalX(), scroller.getFinalY());
-            float x = velocityX == 0 ? position.getX() : target.getX() * scale;
-            float y = velocityY == 0 ? position.getY() : target.getY() * scale;
-
-            gestureAnimator.animateTranslation(position.getX(), x, position.getY(), y);
-
+            gestureAnimator.fling((int) velocityX, (int) velocityY);
             return true;
         }
 
@@ -152,289 +115,405 @@ class TouchManager {
         public boolean onDoubleTap(MotionEvent e) {
             final float fromX, toX, fromY, toY, targetScale;
 
-            TouchPoint eventPoint = new TouchPoint(e.getX(), e.getY());
-            if(scale == minimumScale) {
-                targetScale = maximumScale / 2;
-                TouchPoint translatedTargetPosition = mapTouchCoordinateToMatrix(eventPoint, targetScale);
-                TouchPoint centeredTargetPosition = centerCoordinates(translatedTargetPosition);
-                fromX = position.getX();
-                toX = centeredTargetPosition.getX();
-                fromY = position.getY();
-                toY = centeredTargetPosition.getY();
+            final float scale = state.getScale();
+            if(scale == state.getMinimumScale()) {
+                targetScale = state.getMaximumScale() / 2;
+                mapTouchCoordinateToMatrix(state, e.getX(), e.getY(), targetScale, doubleTapPoint);
+                centerCoordinates(state, doubleTapPoint);
+                fromX = state.getPositionX();
+                toX = doubleTapPoint.getX();
+                fromY = state.getPositionY();
+                toY = doubleTapPoint.getY();
             }
             else {
-                targetScale = minimumScale;
-                TouchPoint translatedPosition = mapTouchCoordinateToMatrix(eventPoint, scale);
-                TouchPoint centeredTargetPosition = centerCoordinates(translatedPosition);
-                fromX = centeredTargetPosition.getX();
+                targetScale = state.getMinimumScale();
+                mapTouchCoordinateToMatrix(state, e.getX(), e.getY(), scale, doubleTapPoint);
+                centerCoordinates(state, doubleTapPoint);
+                fromX = doubleTapPoint.getX();
                 toX = 0;
-                fromY = centeredTargetPosition.getY();
+                fromY = doubleTapPoint.getY();
                 toY = 0;
             }
 
-            gestureAnimator.animateDoubleTap(fromX, toX, fromY, toY, scale, targetScale);
+            gestureAnimator.zoom(fromX, toX, fromY, toY, scale, targetScale);
             return true;
         }
-
-        private TouchPoint centerCoordinates(TouchPoint coordinates) {
-            float x = coordinates.getX() + (imageBounds.right / 2);
-            float y = coordinates.getY() + (imageBounds.bottom / 2);
-            return new TouchPoint(x, y);
-        }
     };
 
     public TouchManager(final ImageView imageView, final CropViewConfig cropViewConfig) {
         this.imageView = imageView;
         scaleGestureDetector = new ScaleGestureDetector(imageView.getContext(), scaleGestureListener);
         gestureDetector = new GestureDetector(imageView.getContext(), gestureListener);
+        // Long presses do nothing, so that touching down need not post a message to detect one
+        gestureDetector.setIsLongpressEnabled(false);
+        scroller = new OverScroller(imageView.getContext());
         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             scaleGestureDetector.setQuickScaleEnabled(true);
         }
 
         this.cropViewConfig = cropViewConfig;
 
-        minimumScale = cropViewConfig.getMinScale();
-        maximumScale = cropViewConfig.getMaxScale();
+        state = new CropState(cropViewConfig.getMinScale(), cropViewConfig.getMaxScale());
     }
 
     @TargetApi(Build.VERSION_CODES.FROYO)
     public void onEvent(MotionEvent event) {
-        scaleGestureDetector.onTouchEvent(event);
-        gestureDetector.onTouchEvent(event);
+        CropTrace.begin("TouchManager.onEvent");
+        try {
+            final int actionMasked = event.getActionMasked();
+            if (actionMasked == MotionEvent.ACTION_DOWN) {
+                // A new touch takes over from any fling or zoom in progress
+                gestureAnimator.stop();
+                touching = true;
+            }
+            scaleGestureDetector.onTouchEvent(event);
+            gestureDetector.onTouchEvent(event);
 
-        if (isUpAction(event.getActionMasked())) {
-            ensureInsideViewport();
+            if (isUpAction(actionMasked)) {
+                state.ensureInsideViewport();
+            }
+            if (actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
+                // After the detectors, so that a fling keeps the bitmap moving
+                touching = false;
+            }
+            invalidateIfChanged();
+            invalidateIfSettled();
+        } finally {
+            CropTrace.end();
         }
     }
 
-    public void applyPositioningAndScale(Matrix matrix) {
-        matrix.postTranslate(-bitmapWidth / 2.0f, -bitmapHeight / 2.0f);
-        matrix.postScale(scale, scale);
-        matrix.postTranslate(position.getX(), position.getY());
+    /**
+     * @return Whether the bitmap is being touched, flung or zoomed.
+     */
+    public boolean isMoving() {
+        return touching || gestureAnimator.isRunning();
     }
 
-    public void resetFor(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
-        aspectRatio = cropViewConfig.getViewportRatio();
-        imageBounds = new Rect(0, 0, availableWidth / 2, availableHeight / 2);
-        setViewport(bitmapWidth, bitmapHeight, availableWidth, availableHeight);
-
-        this.bitmapWidth = bitmapWidth;
-        this.bitmapHeight = bitmapHeight;
-        if (bitmapWidth > 0 && bitmapHeight > 0) {
-            setMinimumScale();
-            setLimits();
-            resetPosition();
-            ensureInsideViewport();
+    /**
+     * Redraws the view on the next frame if the bitmap moved since it was last drawn. Requests are coalesced, so that a frame
+     * is drawn at most once however many events or animation updates it follows.
+     */
+    private void invalidateIfChanged() {
+        final float scale = state.getScale();
+        final float x = state.getPositionX();
+        final float y = state.getPositionY();
+        if (scale == drawnScale && x == drawnX && y == drawnY) {
+            return;
         }
+        drawnScale = scale;
+        drawnX = x;
+        drawnY = y;
+        revision++;
+        if (isMoving()) {
+            movedWhileDrawing = true;
+        }
+        postInvalidate();
     }
 
-    public int getViewportWidth() {
-        return viewportWidth;
+    /**
+     * Redraws the view once the bitmap settles if frames were drawn at a lower quality while it moved, see
+     * {@link CropView#setAdaptiveQuality(boolean)}.
+     */
+    private void invalidateIfSettled() {
+        if (!movedWhileDrawing || isMoving()) {
+            return;
+        }
+        movedWhileDrawing = false;
+        if (cropViewConfig.adaptiveQuality()) {
+            postInvalidate();
+        }
     }
 
-    public int getViewportHeight() {
-        return viewportHeight;
+    private void postInvalidate() {
+        if (moveListener != null) {
+            moveListener.run();
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            imageView.postInvalidateOnAnimation();
+        } else {
+            imageView.invalidate();
+        }
     }
 
-    public float getAspectRatio() {
-        return aspectRatio;
+    public void applyPositioningAndScale(Matrix matrix) {
+        applyPositioningAndScale(state, matrix);
     }
 
-    public void setAspectRatio(float ratio) {
-        aspectRatio = ratio;
-        cropViewConfig.setViewportRatio(ratio);
+    /**
+     * Sets {@code matrix} to map the bitmap shown upright into view coordinates, that is
+     * {@link #applyPositioningAndScale(Matrix)} without the bitmap orientation.
+     */
+    public void applyUprightPositioningAndScale(Matrix matrix) {
+        matrix.reset();
+        applyUprightPositioningAndScale(state, matrix);
     }
 
-    private TouchPoint mapTouchCoordinateToMatrix(TouchPoint coordinate, float targetScale) {
-        float width = bitmapWidth * targetScale;
-        float height = bitmapHeight * targetScale;
-
-        float x0 = width / 2;
-        float y0 = height / 2;
-
-        float newX = coordinate.getX() * targetScale;
-        newX = -(newX - x0);
+    public float getScale() {
+        return state.getScale();
+    }
 
-        float newY = coordinate.getY() * targetScale;
-        if(newY > y0) {
-            newY = -(newY - y0);
-        }
-        else {
-            newY = y0 - newY;
-        }
+    /**
+     * @return Horizontal position of the center of the bitmap in view coordinates.
+     */
+    public float getPositionX() {
+        return state.getPositionX();
+    }
 
-        return new TouchPoint(newX, newY);
+    /**
+     * @return Vertical position of the center of the bitmap in view coordinates.
+     */
+    public float getPositionY() {
+        return state.getPositionY();
     }
 
-    private void ensureInsideViewport() {
-        if (imageBounds == null) {
-            return;
-        }
+    /**
+     * Sets what to run instead of redrawing the view whenever the bitmap moves, or settles after moving at a lower quality.
+     *
+     * @param moveListener Or <code>null</code> to redraw the view.
+     */
+    void setMoveListener(@Nullable Runnable moveListener) {
+        this.moveListener = moveListener;
+    }
 
-        float newY = position.getY();
-        int bottom = imageBounds.bottom;
+    /**
+     * Post concatenates to {@code matrix} the transform showing the bitmap as stored, in its orientation, scaled and positioned
+     * in the available space.
+     */
+    static void applyPositioningAndScale(CropState state, Matrix matrix) {
+        Utils.applyOrientation(matrix, state.getOrientation(), state.getSourceWidth(), state.getSourceHeight());
+        applyUprightPositioningAndScale(state, matrix);
+    }
 
+    private static void applyUprightPositioningAndScale(CropState state, Matrix matrix) {
+        final float scale = state.getScale();
+        matrix.postTranslate(-state.getBitmapWidth() / 2.0f, -state.getBitmapHeight() / 2.0f);
+        matrix.postScale(scale, scale);
+        matrix.postTranslate(state.getPositionX(), state.getPositionY());
+    }
 
-        if (bottom - newY >= verticalLimit) {
-            newY = bottom - verticalLimit;
-        } else if (newY - bottom >= verticalLimit) {
-            newY = bottom + verticalLimit;
-        }
+    /**
+     * @param bitmapWidth Width of the bitmap as stored.
+     * @param bitmapHeight Height of the bitmap as stored.
+     * @param orientation EXIF orientation of the bitmap, see {@link Orientation}.
+     */
+    public void resetFor(int bitmapWidth, int bitmapHeight, int orientation, int availableWidth, int availableHeight) {
+        state.setViewportRatio(cropViewConfig.getViewportRatio());
+        state.setViewportPadding(cropViewConfig.getViewportOverlayPadding());
+        state.setOrientation(orientation);
+        state.reset(bitmapWidth, bitmapHeight, availableWidth, availableHeight);
+        // Resets are followed by a redraw of the whole view
+        drawnScale = state.getScale();
+        drawnX = state.getPositionX();
+        drawnY = state.getPositionY();
+        revision++;
+    }
 
-        float newX = position.getX();
-        int right = imageBounds.right;
-        if (newX <= right - horizontalLimit) {
-            newX = right - horizontalLimit;
-        } else if (newX > right + horizontalLimit) {
-            newX = right + horizontalLimit;
-        }
+    /**
+     * @return A number which changes whenever the scale or position of the bitmap changes.
+     */
+    public int getRevision() {
+        return revision;
+    }
 
-        position.set(newX, newY);
+    public int getViewportWidth() {
+        return state.getViewportWidth();
     }
 
-    private void setViewport(int bitmapWidth, int bitmapHeight, int availableWidth, int availableHeight) {
-        final float imageAspect = (float) bitmapWidth / bitmapHeight;
-        final float viewAspect = (float) availableWidth / availableHeight;
+    public int getViewportHeight() {
+        return state.getViewportHeight();
+    }
 
-        float ratio = cropViewConfig.getViewportRatio();
-        if (Float.compare(0f, ratio) == 0) {
-            // viewport ratio of 0 means match native ratio of bitmap
-            ratio = imageAspect;
-        }
+    /**
+     * Sets {@code matrix} to map the bitmap shown upright into viewport coordinates, that is
+     * {@link #applyPositioningAndScale(Matrix)} without the bitmap orientation and relative to the top left corner of the viewport.
+     */
+    public void applyViewportTransform(Matrix matrix) {
+        applyViewportTransform(state, matrix);
+    }
 
-        if (ratio > viewAspect) {
-            // viewport is wider than view
-            viewportWidth = availableWidth - cropViewConfig.getViewportOverlayPadding() * 2;
-            viewportHeight = (int) (viewportWidth * (1 / ratio));
-        } else {
-            // viewport is taller than view
-            viewportHeight = availableHeight - cropViewConfig.getViewportOverlayPadding() * 2;
-            viewportWidth = (int) (viewportHeight * ratio);
-        }
+    static void applyViewportTransform(CropState state, Matrix matrix) {
+        matrix.reset();
+        applyUprightPositioningAndScale(state, matrix);
+        matrix.postTranslate(-state.getViewportLeft(), -state.getViewportTop());
     }
 
-    private void setLimits() {
-        horizontalLimit = computeLimit((int) (bitmapWidth * scale), viewportWidth);
-        verticalLimit = computeLimit((int) (bitmapHeight * scale), viewportHeight);
+    /**
+     * @return A copy of the current crop geometry, unaffected by further gestures.
+     */
+    public CropState copyState() {
+        return new CropState(state);
     }
 
-    private void resetPosition() {
-        position.set(imageBounds.right, imageBounds.bottom);
+    public float getAspectRatio() {
+        return state.getViewportRatio();
     }
 
-    private void setMinimumScale() {
-        final float fw = (float) viewportWidth / bitmapWidth;
-        final float fh = (float) viewportHeight / bitmapHeight;
-        minimumScale = Math.max(fw, fh);
-        scale = Math.max(scale, minimumScale);
+    public void setAspectRatio(float ratio) {
+        state.setViewportRatio(ratio);
+        cropViewConfig.setViewportRatio(ratio);
     }
 
-    private float calculateScale(float newScaleDelta) {
-        return Math.max(minimumScale, Math.min(scale * newScaleDelta, maximumScale));
+    /**
+     * Sets {@code out} to the position of the bitmap at {@code targetScale} bringing the touched point to the center of the view,
+     * before {@link #centerCoordinates(CropState, TouchPoint)}.
+     */
+    static void mapTouchCoordinateToMatrix(CropState state, float x, float y, float targetScale, TouchPoint out) {
+        float width = state.getBitmapWidth() * targetScale;
+        float height = state.getBitmapHeight() * targetScale;
+
+        float x0 = width / 2;
+        float y0 = height / 2;
+
+        float newX = x * targetScale;
+        newX = -(newX - x0);
+
+        float newY = y * targetScale;
+        if(newY > y0) {
+            newY = -(newY - y0);
+        }
+        else {
+            newY = y0 - newY;
+        }
+
+        out.set(newX, newY);
     }
 
-    private static int computeLimit(int bitmapSize, int viewportSize) {
-        return (bitmapSize - viewportSize) / 2;
+    static void centerCoordinates(CropState state, TouchPoint coordinates) {
+        coordinates.set(coordinates.getX() + (state.getCenterX() / 2), coordinates.getY() + (state.getCenterY() / 2));
     }
 
     private static boolean isUpAction(int actionMasked) {
         return actionMasked == MotionEvent.ACTION_POINTER_UP || actionMasked == MotionEvent.ACTION_UP;
     }
 
-    private static class GestureAnimator {
-        @IntDef({ANIMATION_X, ANIMATION_Y, ANIMATION_SCALE})
-        @Retention(RetentionPolicy.SOURCE)
-        public @interface AnimationType {}
-        public static final int ANIMATION_X = 0;
-        public static final int ANIMATION_Y = 1;
-        public static final int ANIMATION_SCALE = 2;
-
-        interface OnAnimationUpdateListener {
-            void onAnimationUpdate(@AnimationType int animationType, float animationValue);
-            void onAnimationFinished();
+    /**
+     * Steps flings and double tap zooms once per frame, on the {@link Choreographer} as of API 16 and through delayed posts
+     * before. Each step moves the bitmap back inside the viewport, so that no frame is drawn out of bounds.
+     */
+    private class GestureAnimator implements Runnable {
+
+        private static final long FRAME_DELAY = 16;
+        private static final long ZOOM_DURATION = 500;
+
+        private final Interpolator zoomInterpolator = new AccelerateDecelerateInterpolator();
+        private final Object frameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? FrameCallbacks.create(this)
+                : null;
+
+        private boolean flinging;
+        private boolean zooming;
+        private boolean scheduled;
+
+        private long zoomStartTime;
+        private float fromX, toX, fromY, toY, fromScale, toScale;
+
+        void fling(int velocityX, int velocityY) {
+            stop();
+            scroller.fling(Math.round(state.getPositionX()), Math.round(state.getPositionY()), velocityX, velocityY,
+                    (int) state.getMinimumPositionX(), (int) state.getMaximumPositionX(),
+                    (int) state.getMinimumPositionY(), (int) state.getMaximumPositionY());
+            flinging = true;
+            schedule();
         }
 
-        private ValueAnimator xAnimator;
-        private ValueAnimator yAnimator;
-        private ValueAnimator scaleAnimator;
-
-        private AnimatorSet animator;
-
-        private final OnAnimationUpdateListener listener;
+        void zoom(float fromX, float toX, float fromY, float toY, float fromScale, float toScale) {
+            stop();
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.fromScale = fromScale;
+            this.toScale = toScale;
+            zoomStartTime = AnimationUtils.currentAnimationTimeMillis();
+            zooming = true;
+            schedule();
+        }
 
-        public GestureAnimator(OnAnimationUpdateListener listener) {
-            this.listener = listener;
+        boolean isRunning() {
+            return flinging || zooming;
         }
 
-        final ValueAnimator.AnimatorUpdateListener updateListener = new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float val = ((float) animation.getAnimatedValue());
+        /**
+         * Leaves the bitmap where the last frame drew it. A frame already scheduled finds nothing to step.
+         */
+        void stop() {
+            scroller.forceFinished(true);
+            flinging = false;
+            zooming = false;
+        }
 
-                if(animation == xAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_X, val);
-                }
-                else if(animation == yAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_Y, val);
-                }
-                else if(animation == scaleAnimator) {
-                    listener.onAnimationUpdate(ANIMATION_SCALE, val);
-                }
+        @Override
+        public void run() {
+            scheduled = false;
+            if (zooming) {
+                stepZoom();
             }
-        };
-
-        private final Animator.AnimatorListener animatorListener = new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if(xAnimator != null) xAnimator.removeUpdateListener(updateListener);
-                if(yAnimator != null) yAnimator.removeUpdateListener(updateListener);
-                if(scaleAnimator != null) scaleAnimator.removeUpdateListener(updateListener);
-                animator.removeAllListeners();
-                listener.onAnimationFinished();
+            if (flinging) {
+                stepFling();
             }
-        };
-
-        public void animateTranslation(float fromX, float toX, float fromY, float toY) {
-            if(animator != null) {
-                animator.cancel();
+            if (!zooming && !flinging) {
+                invalidateIfSettled();
+                return;
             }
 
-            xAnimator = ValueAnimator.ofFloat(fromX, toX);
-            yAnimator = ValueAnimator.ofFloat(fromY, toY);
-            scaleAnimator = null;
-
-            xAnimator.addUpdateListener(updateListener);
-            yAnimator.addUpdateListener(updateListener);
-
-            animate(new DecelerateInterpolator(), 250, xAnimator, yAnimator);
+            state.ensureInsideViewport();
+            invalidateIfChanged();
+            schedule();
         }
 
-        public void animateDoubleTap(float fromX, float toX, float fromY, float toY, float fromScale, float toScale) {
-            if(animator != null) {
-                animator.cancel();
+        private void stepZoom() {
+            final float elapsed = (float) (AnimationUtils.currentAnimationTimeMillis() - zoomStartTime) / ZOOM_DURATION;
+            final float fraction = zoomInterpolator.getInterpolation(Math.min(1f, elapsed));
+            state.setScale(fromScale + (toScale - fromScale) * fraction);
+            state.setPosition(fromX + (toX - fromX) * fraction, fromY + (toY - fromY) * fraction);
+            if (elapsed >= 1f) {
+                zooming = false;
+                // Last frame of the zoom
+                state.ensureInsideViewport();
+                invalidateIfChanged();
             }
+        }
 
-            xAnimator = ValueAnimator.ofFloat(fromX, toX);
-            yAnimator = ValueAnimator.ofFloat(fromY, toY);
-            scaleAnimator = ValueAnimator.ofFloat(fromScale, toScale);
+        private void stepFling() {
+            if (scroller.computeScrollOffset()) {
+                state.setPosition(scroller.getCurrX(), scroller.getCurrY());
+                return;
+            }
+            flinging = false;
+        }
 
-            xAnimator.addUpdateListener(updateListener);
-            yAnimator.addUpdateListener(updateListener);
-            scaleAnimator.addUpdateListener(updateListener);
+        private void schedule() {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            if (frameCallback != null) {
+                FrameCallbacks.post(frameCallback);
+            } else {
+                imageView.postDelayed(this, FRAME_DELAY);
+            }
+        }
+    }
 
-            animate(new AccelerateDecelerateInterpolator(), 500, scaleAnimator, xAnimator, yAnimator);
+    /**
+     * Keeps {@link Choreographer} out of classes loaded below API 16.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallbacks {
+
+        static Object create(final Runnable frame) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    frame.run();
+                }
+            };
         }
 
-        private void animate(Interpolator interpolator, long duration, ValueAnimator first, ValueAnimator... animators) {
-            animator = new AnimatorSet();
-            animator.setDuration(duration);
-            animator.setInterpolator(interpolator);
-            animator.addListener(animatorListener);
-            AnimatorSet.Builder builder = animator.play(first);
-            for(ValueAnimator valueAnimator : animators) {
-                builder.with(valueAnimator);
-            }
-            animator.start();
+        static void post(Object frameCallback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
         }
     }
 }
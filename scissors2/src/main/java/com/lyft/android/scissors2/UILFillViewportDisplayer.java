@@ -10,32 +10,43 @@ import com.nostra13.universalimageloader.core.imageaware.ImageAware;
 class UILFillViewportDisplayer implements BitmapDisplayer {
     private final int viewportWidth;
     private final int viewportHeight;
+    private final @CropView.DisplayConfig int displayConfig;
 
-    public UILFillViewportDisplayer(int viewportWidth, int viewportHeight) {
+    public UILFillViewportDisplayer(int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig) {
         this.viewportWidth = viewportWidth;
         this.viewportHeight = viewportHeight;
+        this.displayConfig = displayConfig;
     }
 
     public static BitmapDisplayer createUsing(int viewportWidth, int viewportHeight) {
-        return new UILFillViewportDisplayer(viewportWidth, viewportHeight);
+        return createUsing(viewportWidth, viewportHeight, CropViewConfig.DEFAULT_DISPLAY_CONFIG);
+    }
+
+    public static BitmapDisplayer createUsing(int viewportWidth, int viewportHeight, @CropView.DisplayConfig int displayConfig) {
+        return new UILFillViewportDisplayer(viewportWidth, viewportHeight, displayConfig);
     }
 
     @Override
     public void display(Bitmap source, ImageAware imageAware, LoadedFrom loadedFrom) {
-        int sourceWidth = source.getWidth();
-        int sourceHeight = source.getHeight();
-
-        Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
-        final Bitmap result = Bitmap.createScaledBitmap(
-                source,
-                target.width(),
-                target.height(),
-                true);
-
-        if (result != source) {
-            source.recycle();
+        CropTrace.begin("UILFillViewportDisplayer.display");
+        try {
+            int sourceWidth = source.getWidth();
+            int sourceHeight = source.getHeight();
+
+            Rect target = CropViewExtensions.computeTargetSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+            final Bitmap result = Utils.scaleForDisplay(
+                    source,
+                    target.width(),
+                    target.height(),
+                    displayConfig);
+
+            if (result != source) {
+                Utils.recycle(source);
+            }
+
+            imageAware.setImageBitmap(result);
+        } finally {
+            CropTrace.end();
         }
-
-        imageAware.setImageBitmap(result);
     }
 }
@@ -15,19 +15,38 @@
  */
 package com.lyft.android.scissors2;
 
+import android.annotation.TargetApi;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Process;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.lyft.android.scissors2.geometry.Orientation;
+
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 class Utils {
 
@@ -55,33 +74,336 @@ class Utils {
         return bitmap;
     }
 
-    private final static ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    /**
+     * @return A bitmap from {@code pool}, cleared, or a new one if the pool has none.
+     */
+    static Bitmap obtainBitmap(@Nullable BitmapPool pool, int width, int height, Bitmap.Config config) {
+        final Bitmap pooled = pool != null ? pool.get(width, height, config) : null;
+        if (pooled != null) {
+            pooled.eraseColor(Color.TRANSPARENT);
+            return pooled;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands {@code bitmap} over to {@code pool}, unless a crop in progress still reads it, see {@link CropSnapshot#isPinned(Bitmap)}.
+     */
+    static void release(@Nullable BitmapPool pool, @Nullable Bitmap bitmap) {
+        if (pool != null && bitmap != null && !CropSnapshot.isPinned(bitmap)) {
+            pool.put(bitmap);
+        }
+    }
+
+    /**
+     * Recycles {@code bitmap}, unless a crop in progress still reads it.
+     */
+    static void recycle(Bitmap bitmap) {
+        if (!CropSnapshot.isPinned(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * @return Whether {@code bitmap} can be drawn into as a {@code width x height} bitmap of given config, reconfiguring it if
+     * required and supported.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    static boolean prepareForReuse(@Nullable Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return false;
+        }
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+            return true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && bitmap.getAllocationByteCount() >= (long) width * height * bytesPerPixel(config)) {
+            bitmap.reconfigure(width, height, config);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Post concatenates to {@code matrix} the transform showing a {@code width x height} bitmap stored in given
+     * {@link Orientation} upright, with its top left corner at the origin.
+     */
+    static void applyOrientation(Matrix matrix, int orientation, float width, float height) {
+        if (Orientation.isMirrored(orientation)) {
+            matrix.postScale(-1, 1);
+            matrix.postTranslate(width, 0);
+        }
+        switch (Orientation.getRotation(orientation)) {
+            case 90:
+                matrix.postRotate(90);
+                matrix.postTranslate(height, 0);
+                break;
+            case 180:
+                matrix.postRotate(180);
+                matrix.postTranslate(width, height);
+                break;
+            case 270:
+                matrix.postRotate(270);
+                matrix.postTranslate(0, width);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return {@code Bitmap.Config.HARDWARE} as of API 26, <code>null</code> before.
+     */
+    @Nullable
+    static Bitmap.Config hardwareConfig() {
+        return HardwareConfig.VALUE;
+    }
+
+    /**
+     * @return Whether {@code bitmap} only lives in graphics memory, so that it cannot be drawn into a software {@link Canvas}.
+     */
+    static boolean isHardware(Bitmap bitmap) {
+        return hardwareConfig() != null && bitmap.getConfig() == hardwareConfig();
+    }
+
+    /**
+     * @return Config of bitmaps displayed with given {@link CropView.DisplayConfig}, or <code>null</code> to keep the loaded one.
+     */
+    @Nullable
+    static Bitmap.Config displayConfig(@CropView.DisplayConfig int displayConfig, boolean hasAlpha) {
+        switch (displayConfig) {
+            case CropView.DisplayConfig.HARDWARE:
+                return hardwareConfig() != null ? hardwareConfig() : lowMemoryConfig(hasAlpha);
+            case CropView.DisplayConfig.LOW_MEMORY:
+                return lowMemoryConfig(hasAlpha);
+            default:
+                return null;
+        }
+    }
+
+    private static Bitmap.Config lowMemoryConfig(boolean hasAlpha) {
+        return hasAlpha ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * Scales a loaded bitmap to the size it is displayed at, in the config given by {@code displayConfig}.
+     *
+     * @return The scaled bitmap, which may be {@code source} itself.
+     */
+    static Bitmap scaleForDisplay(Bitmap source, int width, int height, @CropView.DisplayConfig int displayConfig) {
+        final Bitmap.Config config = displayConfig(displayConfig, source.hasAlpha());
+        if (config == null || config == source.getConfig()) {
+            return Bitmap.createScaledBitmap(source, width, height, true);
+        }
+
+        if (config == hardwareConfig()) {
+            // Hardware bitmaps can only be copied from a software one
+            final Bitmap scaled = Bitmap.createScaledBitmap(source, width, height, true);
+            final Bitmap hardware = scaled.copy(config, false);
+            if (hardware == null) {
+                return scaled;
+            }
+            if (scaled != source) {
+                scaled.recycle();
+            }
+            return hardware;
+        }
+
+        final Bitmap result = Bitmap.createBitmap(width, height, config);
+        final Canvas canvas = new Canvas(result);
+        canvas.scale((float) width / source.getWidth(), (float) height / source.getHeight());
+        canvas.drawBitmap(source, 0, 0, new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG));
+        canvas.setBitmap(null);
+        return result;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int THREAD_COUNT = Math.max(1, Math.min(CPU_COUNT - 1, 4));
+    private final static ExecutorService EXECUTOR_SERVICE = newDefaultExecutor();
     private static final String TAG = "scissors.Utils";
 
-    public static Future<Void> flushToFile(final Bitmap bitmap,
+    /**
+     * @return Default executor, a bounded pool of background priority threads running higher {@link CropRequest.Priority} first.
+     */
+    static Executor defaultExecutor() {
+        return EXECUTOR_SERVICE;
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "scissors-" + count.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs {@code runnable} on {@code executor}, ahead of queued tasks of lower {@code priority} when the executor is backed by a
+     * priority queue.
+     *
+     * @param name Name of the async {@link CropTrace} slice spanning from now until the task is done.
+     */
+    static Future<Void> submit(Executor executor, @CropRequest.Priority int priority, String name, Runnable runnable) {
+        final PriorityFutureTask<Void> task = new PriorityFutureTask<>(runnable, priority, name);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs {@code callable} on {@code executor}, see {@link #submit(Executor, int, String, Runnable)}.
+     */
+    static <T> Future<T> submit(Executor executor, @CropRequest.Priority int priority, String name, Callable<T> callable) {
+        final PriorityFutureTask<T> task = new PriorityFutureTask<>(callable, priority, name);
+        executor.execute(task);
+        return task;
+    }
+
+    public static Future<WriteResult> flushToFile(final Bitmap bitmap,
             final Bitmap.CompressFormat format,
             final int quality,
             final File file) {
 
-        return EXECUTOR_SERVICE.submit(new Runnable() {
+        return flushToFile(fileWriter(just(bitmap), format, quality, file, false, null, CropMetrics.resolve(null)),
+                EXECUTOR_SERVICE, CropRequest.Priority.NORMAL);
+    }
+
+    /**
+     * Runs {@code writer} on {@code executor}, within a {@link CropTrace} slice named after this method.
+     */
+    static <T> Future<T> flushToFile(Callable<T> writer, Executor executor, @CropRequest.Priority int priority) {
+        return submit(executor, priority, "Utils.flushToFile", writer);
+    }
+
+    /**
+     * @param metrics Listeners told about encoding and writing, if any.
+     * @return A task flushing the bitmap produced by {@code bitmapSource} into {@code file} atomically, see {@link FileSink},
+     * then handing it over to {@code pool} if any. The task throws whatever failed.
+     */
+    static Callable<WriteResult> fileWriter(final Callable<Bitmap> bitmapSource,
+            final Bitmap.CompressFormat format,
+            final int quality,
+            final File file,
+            final boolean sync,
+            @Nullable final BitmapPool pool,
+            @Nullable final CropMetrics metrics) {
+
+        return new Callable<WriteResult>() {
             @Override
-            public void run() {
-                OutputStream outputStream = null;
+            public WriteResult call() throws Exception {
+                Bitmap bitmap = null;
 
                 try {
-                    file.getParentFile().mkdirs();
-                    outputStream = new FileOutputStream(file);
-                    bitmap.compress(format, quality, outputStream);
-                    outputStream.flush();
+                    bitmap = crop(bitmapSource);
+                    return writeToFile(bitmap, format, quality, file, sync, metrics);
                 } catch (final Throwable throwable) {
                     if (BuildConfig.DEBUG) {
                         Log.e(TAG, "Error attempting to save bitmap.", throwable);
                     }
+                    throw throwable;
                 } finally {
-                    closeQuietly(outputStream);
+                    release(pool, bitmap);
                 }
             }
-        }, null);
+        };
+    }
+
+    /**
+     * @param metrics Listeners told about encoding and writing, if any.
+     */
+    static WriteResult writeToFile(final Bitmap bitmap,
+            final Bitmap.CompressFormat format,
+            final int quality,
+            File file,
+            boolean sync,
+            @Nullable CropMetrics metrics) throws IOException {
+
+        final CompressContent content = new CompressContent(bitmap, format, quality);
+        final WriteResult result;
+        CropTrace.begin("Utils.write");
+        try {
+            result = FileSink.write(file, sync, content);
+        } finally {
+            CropTrace.end();
+        }
+        if (metrics != null) {
+            reportWrite(metrics, content.durationNanos, bitmap.getWidth(), bitmap.getHeight(), bitmap.getByteCount(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Compresses {@code bitmap} into {@code outputStream} then flushes it, telling {@code metrics} if any.
+     */
+    static void writeToStream(Bitmap bitmap,
+            Bitmap.CompressFormat format,
+            int quality,
+            OutputStream outputStream,
+            @Nullable CropMetrics metrics) throws IOException {
+
+        CropTrace.begin("Utils.compress");
+        try {
+            if (metrics == null) {
+                bitmap.compress(format, quality, outputStream);
+                outputStream.flush();
+                return;
+            }
+
+            final long start = System.nanoTime();
+            final CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+            bitmap.compress(format, quality, countingStream);
+            countingStream.flush();
+            CropMetrics.report(metrics, CropMetrics.Stage.ENCODE, System.nanoTime() - start, bitmap, countingStream.count,
+                    null);
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    /**
+     * @return The bitmap produced by {@code bitmapSource}, within a {@link CropTrace} section.
+     */
+    private static Bitmap crop(Callable<Bitmap> bitmapSource) throws Exception {
+        CropTrace.begin("Utils.crop");
+        try {
+            return bitmapSource.call();
+        } finally {
+            CropTrace.end();
+        }
+    }
+
+    /**
+     * Reports a file write to {@code metrics}, split into the time spent encoding and the rest.
+     */
+    private static void reportWrite(CropMetrics metrics, long encodeNanos, int width, int height, long bitmapByteCount,
+            WriteResult result) {
+        CropMetrics.report(metrics, CropMetrics.Stage.ENCODE, encodeNanos, width, height, bitmapByteCount,
+                result.getByteCount(), null);
+        CropMetrics.report(metrics, CropMetrics.Stage.WRITE, result.getDurationNanos() - encodeNanos, width, height,
+                bitmapByteCount, result.getByteCount(), null);
     }
 
     public static Future<Void> flushToStream(final Bitmap bitmap,
@@ -90,29 +412,355 @@ class Utils {
             final OutputStream outputStream,
             final boolean closeWhenDone) {
 
-        return EXECUTOR_SERVICE.submit(new Runnable() {
+        return flushToStream(just(bitmap), format, quality, outputStream, closeWhenDone, null, EXECUTOR_SERVICE,
+                CropRequest.Priority.NORMAL, CropMetrics.resolve(null));
+    }
+
+    /**
+     * Flushes the bitmap produced by {@code bitmapSource} on {@code executor}, then hands it over to {@code pool} if any.
+     *
+     * @param metrics Listeners told about encoding, if any.
+     * @return A {@link Future} of the write, failing with whatever failed.
+     */
+    public static Future<Void> flushToStream(final Callable<Bitmap> bitmapSource,
+            final Bitmap.CompressFormat format,
+            final int quality,
+            final OutputStream outputStream,
+            final boolean closeWhenDone,
+            @Nullable final BitmapPool pool,
+            final Executor executor,
+            @CropRequest.Priority final int priority,
+            @Nullable final CropMetrics metrics) {
+
+        return submit(executor, priority, "Utils.flushToStream", new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Bitmap bitmap = null;
+
+                try {
+                    bitmap = crop(bitmapSource);
+                    writeToStream(bitmap, format, quality, outputStream, metrics);
+                    return null;
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to save bitmap.", throwable);
+                    }
+                    throw throwable;
+                } finally {
+                    if (closeWhenDone) {
+                        closeQuietly(outputStream);
+                    }
+                    release(pool, bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return A task flushing {@code source} into {@code file} atomically strip by strip, see
+     * {@link #writeStrips(StripSource, Bitmap.CompressFormat, int, long, BitmapPool, OutputStream, CropMetrics)}. The task
+     * throws whatever failed.
+     */
+    static Callable<WriteResult> fileWriter(final StripSource source,
+            final Bitmap.CompressFormat format,
+            final int quality,
+            final File file,
+            final boolean sync,
+            final long maxMemory,
+            @Nullable final BitmapPool pool,
+            @Nullable final CropMetrics metrics) {
+
+        return new Callable<WriteResult>() {
+            @Override
+            public WriteResult call() throws Exception {
+                try {
+                    final long[] encodeNanos = new long[1];
+                    final WriteResult result;
+                    CropTrace.begin("Utils.write");
+                    try {
+                        result = FileSink.write(file, sync, new FileSink.Content() {
+                            @Override
+                            public void writeTo(OutputStream outputStream) throws IOException {
+                                encodeNanos[0] = writeStrips(source, format, quality, maxMemory, pool, outputStream, metrics);
+                            }
+                        });
+                    } finally {
+                        CropTrace.end();
+                    }
+                    if (metrics != null) {
+                        reportWrite(metrics, encodeNanos[0], source.getWidth(), source.getHeight(), 0, result);
+                    }
+                    return result;
+                } catch (final Throwable throwable) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Error attempting to save bitmap.", throwable);
+                    }
+                    throw throwable;
+                }
+            }
+        };
+    }
+
+    public static Future<Void> flushToStream(final StripSource source,
+            final Bitmap.CompressFormat format,
+            final int quality,
+            final OutputStream outputStream,
+            final boolean closeWhenDone,
+            final long maxMemory,
+            @Nullable final BitmapPool pool,
+            final Executor executor,
+            @CropRequest.Priority final int priority,
+            @Nullable final CropMetrics metrics) {
+
+        return submit(executor, priority, "Utils.flushToStream", new Callable<Void>() {
             @Override
-            public void run() {
+            public Void call() throws Exception {
                 try {
-                    bitmap.compress(format, quality, outputStream);
-                    outputStream.flush();
+                    if (metrics == null) {
+                        writeStrips(source, format, quality, maxMemory, pool, outputStream, null);
+                        return null;
+                    }
+                    final CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+                    final long encodeNanos = writeStrips(source, format, quality, maxMemory, pool, countingStream, metrics);
+                    CropMetrics.report(metrics, CropMetrics.Stage.ENCODE, encodeNanos, source.getWidth(), source.getHeight(),
+                            0, countingStream.count, null);
+                    return null;
                 } catch (final Throwable throwable) {
                     if (BuildConfig.DEBUG) {
                         Log.e(TAG, "Error attempting to save bitmap.", throwable);
                     }
+                    throw throwable;
                 } finally {
                     if (closeWhenDone) {
                         closeQuietly(outputStream);
                     }
                 }
             }
-        }, null);
+        });
+    }
+
+    /**
+     * Renders and encodes {@code source} strip by strip, sizing strips so that no more than about {@code maxMemory} bytes are held
+     * at once. Rendering is reported to {@code metrics} if any, as a single {@link CropMetrics.Stage#CROP}.
+     *
+     * @return Time spent encoding in nanoseconds if measured for {@code metrics}, else 0.
+     */
+    static long writeStrips(StripSource source,
+            Bitmap.CompressFormat format,
+            int quality,
+            long maxMemory,
+            @Nullable BitmapPool pool,
+            OutputStream outputStream,
+            @Nullable CropMetrics metrics) throws IOException {
+
+        long cropNanos = 0;
+        long encodeNanos = 0;
+        StripEncoder encoder = null;
+        try {
+            source.open();
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            encoder = StripEncoder.create(format, width, height, quality, outputStream);
+
+            final int stripHeight = stripHeight(width, height, maxMemory, encoder, source);
+            final Bitmap strip = obtainBitmap(pool, width, stripHeight, Bitmap.Config.ARGB_8888);
+            final int[] pixels = new int[width * stripHeight];
+            try {
+                for (int top = 0; top < height; top += stripHeight) {
+                    final int rows = Math.min(stripHeight, height - top);
+                    final long start = metrics != null ? System.nanoTime() : 0;
+                    CropTrace.begin("Utils.crop");
+                    try {
+                        source.draw(strip, top);
+                    } finally {
+                        CropTrace.end();
+                    }
+                    final long drawn = metrics != null ? System.nanoTime() : 0;
+                    CropTrace.begin("Utils.compress");
+                    try {
+                        strip.getPixels(pixels, 0, width, 0, 0, width, rows);
+                        encoder.writeRows(pixels, 0, width, rows);
+                    } finally {
+                        CropTrace.end();
+                    }
+                    if (metrics != null) {
+                        cropNanos += drawn - start;
+                        encodeNanos += System.nanoTime() - drawn;
+                    }
+                }
+                if (metrics != null) {
+                    CropMetrics.report(metrics, CropMetrics.Stage.CROP, cropNanos, width, height, strip.getByteCount(), -1,
+                            null);
+                }
+            } finally {
+                if (pool != null) {
+                    pool.put(strip);
+                } else {
+                    strip.recycle();
+                }
+            }
+        } finally {
+            if (encoder != null) {
+                encoder.release();
+            }
+            source.close();
+        }
+        return encodeNanos;
+    }
+
+    static int stripHeight(int width, int height, long maxMemory, StripEncoder encoder, StripSource source) {
+        // A strip is held as a bitmap and as the int[] handed to the encoder
+        final long bytesPerRow = width * 8L + source.bufferSizePerRow();
+        final long available = maxMemory - encoder.bufferSize(encoder.rowAlignment());
+        int stripHeight = (int) Math.min(height, Math.max(1, available / bytesPerRow));
+        if (stripHeight > encoder.rowAlignment() && stripHeight < height) {
+            stripHeight -= stripHeight % encoder.rowAlignment();
+        }
+        return stripHeight;
+    }
+
+    /**
+     * Compresses a bitmap into a {@link FileSink}, keeping the time it took.
+     */
+    private static class CompressContent implements FileSink.Content {
+
+        private final Bitmap bitmap;
+        private final Bitmap.CompressFormat format;
+        private final int quality;
+        long durationNanos;
+
+        CompressContent(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+            this.bitmap = bitmap;
+            this.format = format;
+            this.quality = quality;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            CropTrace.begin("Utils.compress");
+            try {
+                final long start = System.nanoTime();
+                if (!bitmap.compress(format, quality, outputStream)) {
+                    throw new IOException("Unable to compress " + bitmap);
+                }
+                durationNanos = System.nanoTime() - start;
+            } finally {
+                CropTrace.end();
+            }
+        }
+    }
+
+    /**
+     * Counts bytes written through it, to size encoded outputs which are not files.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Looks {@code Bitmap.Config.HARDWARE} up on first use only, so that loading {@link Utils} does not read {@link Build}.
+     */
+    private static class HardwareConfig {
+
+        static final Bitmap.Config VALUE = Build.VERSION.SDK_INT >= 26 ? Bitmap.Config.valueOf("HARDWARE") : null;
+    }
+
+    private static class PriorityFutureTask<T> extends FutureTask<T> implements Comparable<PriorityFutureTask<?>> {
+
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
+        private final int priority;
+        private final long sequence = SEQUENCE.getAndIncrement();
+        private final String name;
+        private final int traceCookie;
+
+        PriorityFutureTask(Runnable runnable, int priority, String name) {
+            super(runnable, null);
+            this.priority = priority;
+            this.name = name;
+            this.traceCookie = CropTrace.beginAsync(name);
+        }
+
+        PriorityFutureTask(Callable<T> callable, int priority, String name) {
+            super(callable);
+            this.priority = priority;
+            this.name = name;
+            this.traceCookie = CropTrace.beginAsync(name);
+        }
+
+        @Override
+        protected void done() {
+            // Run or cancelled while queued alike
+            CropTrace.endAsync(name, traceCookie);
+        }
+
+        @Override
+        public int compareTo(@NonNull PriorityFutureTask<?> other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * @return A task running {@code callable} and dropping its result, throwing whatever it throws.
+     */
+    static Callable<Void> ignoringResult(final Callable<?> callable) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                callable.call();
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Throws {@code throwable} if any, as is unless it is neither an {@link Exception} nor an {@link Error}.
+     */
+    static void rethrow(@Nullable Throwable throwable) throws Exception {
+        if (throwable instanceof Exception) {
+            throw (Exception) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable != null) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    private static Callable<Bitmap> just(final Bitmap bitmap) {
+        return new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return bitmap;
+            }
+        };
     }
 
-    private static void closeQuietly(@Nullable OutputStream outputStream) {
+    static void closeQuietly(@Nullable Closeable closeable) {
         try {
-            if (outputStream != null) {
-                outputStream.close();
+            if (closeable != null) {
+                closeable.close();
             }
         } catch (Exception e) {
             Log.e(TAG, "Error attempting to close stream.", e);
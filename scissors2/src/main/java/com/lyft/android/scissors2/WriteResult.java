@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Lyft, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lyft.android.scissors2;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of writing a cropped bitmap into a {@link File}.
+ */
+public final class WriteResult {
+
+    private final File file;
+    private final long byteCount;
+    private final long durationNanos;
+    private final boolean synced;
+
+    WriteResult(File file, long byteCount, long durationNanos, boolean synced) {
+        this.file = file;
+        this.byteCount = byteCount;
+        this.durationNanos = durationNanos;
+        this.synced = synced;
+    }
+
+    /**
+     * @return File written, complete as soon as it exists since it is only renamed into place once fully written.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Size of the file written, in bytes.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return Time spent writing the file, including encoding which streams into it, in milliseconds.
+     */
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Write throughput in bytes per second.
+     */
+    public long getBytesPerSecond() {
+        return durationNanos > 0 ? byteCount * TimeUnit.SECONDS.toNanos(1) / durationNanos : 0;
+    }
+
+    /**
+     * @return Whether the file was synced to storage before being renamed into place, see {@link CropRequest#sync(boolean)}.
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteResult{file=" + file
+                + ", byteCount=" + byteCount
+                + ", durationMillis=" + getDurationMillis()
+                + ", synced=" + synced
+                + '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropMetricsTest {
+
+    private static final int VIEW_SIZE = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private CropView cropView;
+    private RecordingMetrics metrics;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        cropView = TestCropViews.laidOut(VIEW_SIZE);
+        cropView.setBitmapPool(null);
+        metrics = new RecordingMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        CropMetrics.setGlobal(null);
+    }
+
+    @Test
+    public void loadReportsDecodeThenLoad() throws Exception {
+        // Shadow scaling loses the bitmap config, which converting it for display keeps
+        final BitmapLoader loader = new NativeBitmapLoader(context, VIEW_SIZE, VIEW_SIZE, CropView.DisplayConfig.LOW_MEMORY,
+                null, TestCropViews.DIRECT);
+        final File image = LargeImageTest.writePngHeader(folder.newFile("image.png"), 2000, 1500);
+
+        cropView.extensions().using(loader).metrics(metrics).load(image);
+
+        assertThat(metrics.stages()).containsExactly(CropMetrics.Stage.DECODE, CropMetrics.Stage.LOAD);
+        final Bitmap bitmap = cropView.getImageBitmap();
+        for (CropMetrics.Measurement measurement : metrics.measurements) {
+            assertThat(measurement.getLoader()).isSameAs(loader);
+            assertThat(measurement.getWidth()).isEqualTo(bitmap.getWidth());
+            assertThat(measurement.getHeight()).isEqualTo(bitmap.getHeight());
+            assertThat(measurement.getBitmapByteCount()).isEqualTo(bitmap.getByteCount());
+            assertThat(measurement.getDurationNanos()).isGreaterThanOrEqualTo(0);
+        }
+        assertThat(metrics.measurements.get(1).getThreadName()).isEqualTo(Looper.getMainLooper().getThread().getName());
+    }
+
+    @Test
+    public void cropIntoFileReportsCropEncodeAndWrite() throws Exception {
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+
+        final WriteResult result = cropView.extensions().crop().executor(TestCropViews.DIRECT).metrics(metrics).intoWithResult(output).get();
+
+        assertThat(metrics.stages()).containsExactly(CropMetrics.Stage.CROP, CropMetrics.Stage.ENCODE,
+                CropMetrics.Stage.WRITE);
+        final CropMetrics.Measurement crop = metrics.measurements.get(0);
+        assertThat(crop.getWidth()).isEqualTo(VIEW_SIZE);
+        assertThat(crop.getHeight()).isEqualTo(VIEW_SIZE);
+        assertThat(crop.getBitmapByteCount()).isEqualTo(VIEW_SIZE * VIEW_SIZE * 4);
+        assertThat(crop.getOutputByteCount()).isEqualTo(-1);
+        assertThat(crop.getLoader()).isNull();
+        assertThat(metrics.measurements.get(1).getOutputByteCount()).isEqualTo(result.getByteCount()).isEqualTo(output.length());
+        assertThat(metrics.measurements.get(2).getOutputByteCount()).isEqualTo(output.length());
+    }
+
+    @Test
+    public void cropIntoStreamCountsEncodedBytes() throws Exception {
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).metrics(metrics).into(outputStream, true).get();
+
+        assertThat(metrics.stages()).containsExactly(CropMetrics.Stage.CROP, CropMetrics.Stage.ENCODE);
+        assertThat(outputStream.size()).isGreaterThan(0);
+        assertThat(metrics.measurements.get(1).getOutputByteCount()).isEqualTo(outputStream.size());
+    }
+
+    @Test
+    public void cropInStripsReportsCropEncodeAndWrite() throws Exception {
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+        final long maxMemory = VIEW_SIZE * VIEW_SIZE;
+
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).maxMemory(maxMemory).metrics(metrics).into(output).get();
+
+        assertThat(metrics.stages()).containsExactly(CropMetrics.Stage.CROP, CropMetrics.Stage.ENCODE,
+                CropMetrics.Stage.WRITE);
+        final CropMetrics.Measurement crop = metrics.measurements.get(0);
+        assertThat(crop.getWidth()).isEqualTo(VIEW_SIZE);
+        assertThat(crop.getBitmapByteCount()).isPositive().isLessThanOrEqualTo(maxMemory);
+        assertThat(metrics.measurements.get(2).getOutputByteCount()).isEqualTo(output.length());
+    }
+
+    @Test
+    public void globalListenerIsToldAlongRequestListener() throws Exception {
+        final RecordingMetrics global = new RecordingMetrics();
+        CropMetrics.setGlobal(global);
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+
+        cropView.crop();
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).metrics(metrics).into(new File(folder.getRoot(), "cropped.jpg")).get();
+
+        assertThat(global.stages()).containsExactly(CropMetrics.Stage.CROP, CropMetrics.Stage.CROP, CropMetrics.Stage.ENCODE,
+                CropMetrics.Stage.WRITE);
+        assertThat(metrics.stages()).containsExactly(CropMetrics.Stage.CROP, CropMetrics.Stage.ENCODE,
+                CropMetrics.Stage.WRITE);
+    }
+
+    @Test
+    public void failingListenerDoesNotFailCrop() throws Exception {
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+
+        final WriteResult result = cropView.extensions().crop().executor(TestCropViews.DIRECT).metrics(new CropMetrics() {
+            @Override
+            public void onStage(@NonNull Measurement measurement) {
+                throw new IllegalStateException();
+            }
+        }).intoWithResult(output).get();
+
+        assertThat(result).isNotNull();
+        assertThat(output.length()).isGreaterThan(0);
+    }
+
+    private static class RecordingMetrics extends CropMetrics {
+
+        final List<Measurement> measurements = new ArrayList<>();
+
+        @Override
+        public synchronized void onStage(@NonNull Measurement measurement) {
+            measurements.add(measurement);
+        }
+
+        synchronized List<Integer> stages() {
+            final List<Integer> stages = new ArrayList<>();
+            for (Measurement measurement : measurements) {
+                stages.add(measurement.getStage());
+            }
+            return stages;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.lyft.android.scissors2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropRequestTest {
+
+    private static final int VIEW_SIZE = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CropView cropView;
+    private File unwritable;
+
+    @Before
+    public void setUp() throws Exception {
+        cropView = TestCropViews.showingBitmap(VIEW_SIZE);
+        // Its parent is a regular file, so that it can be neither created nor written
+        unwritable = new File(folder.newFile("parent"), "cropped.jpg");
+    }
+
+    @Test
+    public void intoWithResultHoldsWrittenFile() throws Exception {
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+
+        final WriteResult result = cropView.extensions().crop().executor(TestCropViews.DIRECT).intoWithResult(output).get();
+
+        assertThat(result.getFile()).isEqualTo(output);
+        assertThat(result.getByteCount()).isEqualTo(output.length());
+    }
+
+    @Test
+    public void intoFailsWithWriteFailure() {
+        assertFailsWithIOException(cropView.extensions().crop().executor(TestCropViews.DIRECT).into(unwritable));
+    }
+
+    @Test
+    public void intoWithResultFailsWithWriteFailure() {
+        assertFailsWithIOException(cropView.extensions().crop().executor(TestCropViews.DIRECT).intoWithResult(unwritable));
+    }
+
+    @Test
+    public void intoInStripsFailsWithWriteFailure() {
+        assertFailsWithIOException(cropView.extensions().crop().executor(TestCropViews.DIRECT).maxMemory(VIEW_SIZE * VIEW_SIZE)
+                .intoWithResult(unwritable));
+    }
+
+    @Test
+    public void intoSeveralSizesFailsWithWriteFailure() {
+        assertFailsWithIOException(cropView.extensions().crop().executor(TestCropViews.DIRECT)
+                .into(Collections.singletonMap(VIEW_SIZE, unwritable)));
+    }
+
+    @Test
+    public void multiCropFailsWithWriteFailure() {
+        assertFailsWithIOException(cropView.extensions().multiCrop(1f, 2f).executor(TestCropViews.DIRECT)
+                .into(new File(folder.getRoot(), "square.jpg"), unwritable));
+        assertThat(new File(folder.getRoot(), "square.jpg").length()).isGreaterThan(0);
+    }
+
+    @Test
+    public void cropWithoutBitmapFailsWithIllegalState() {
+        final CropView empty = TestCropViews.laidOut(VIEW_SIZE);
+
+        assertFailsWith(IllegalStateException.class, empty.extensions().crop().executor(TestCropViews.DIRECT)
+                .into(new File(folder.getRoot(), "cropped.jpg")));
+        assertFailsWith(IllegalStateException.class, empty.extensions().crop().executor(TestCropViews.DIRECT)
+                .maxMemory(VIEW_SIZE * VIEW_SIZE).into(new File(folder.getRoot(), "strips.jpg")));
+        assertFailsWith(IllegalStateException.class, empty.extensions().crop().executor(TestCropViews.DIRECT)
+                .into(Collections.singletonMap(VIEW_SIZE, new File(folder.getRoot(), "sized.jpg"))));
+    }
+
+    private static void assertFailsWithIOException(Future<?> future) {
+        assertFailsWith(IOException.class, future);
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> cause, Future<?> future) {
+        try {
+            future.get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(cause);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
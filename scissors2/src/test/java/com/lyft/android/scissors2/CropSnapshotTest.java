@@ -0,0 +1,101 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CropSnapshotTest {
+
+    private static final int VIEW_SIZE = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> queue = new ArrayList<>();
+    private final Executor queued = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+    };
+
+    private CropView cropView;
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() {
+        cropView = TestCropViews.laidOut(VIEW_SIZE);
+        bitmap = Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888);
+        cropView.setImageBitmap(bitmap);
+    }
+
+    @Test
+    public void cropPinsBitmapUntilItRuns() throws Exception {
+        cropView.extensions().crop().executor(queued).into(new File(folder.getRoot(), "cropped.jpg"));
+        cropView.setImageBitmap(Bitmap.createBitmap(1000, 1000, Bitmap.Config.ARGB_8888));
+
+        assertThat(CropSnapshot.isPinned(bitmap)).isTrue();
+        runQueue();
+        assertThat(CropSnapshot.isPinned(bitmap)).isFalse();
+    }
+
+    @Test
+    public void stripsPinBitmapUntilClosed() throws Exception {
+        cropView.extensions().crop().executor(queued).maxMemory(VIEW_SIZE * VIEW_SIZE)
+                .into(new File(folder.getRoot(), "cropped.jpg"));
+
+        assertThat(CropSnapshot.isPinned(bitmap)).isTrue();
+        runQueue();
+        assertThat(CropSnapshot.isPinned(bitmap)).isFalse();
+    }
+
+    @Test
+    public void multiCropPinsBitmapUntilItRuns() throws Exception {
+        cropView.extensions().multiCrop(1f, 2f).executor(queued).into(new File(folder.getRoot(), "square.jpg"),
+                new File(folder.getRoot(), "wide.jpg"));
+
+        assertThat(CropSnapshot.isPinned(bitmap)).isTrue();
+        runQueue();
+        assertThat(CropSnapshot.isPinned(bitmap)).isFalse();
+    }
+
+    @Test
+    public void synchronousCropDoesNotPinBitmap() {
+        cropView.crop();
+
+        assertThat(CropSnapshot.isPinned(bitmap)).isFalse();
+    }
+
+    @Test
+    public void poolAndReleaseLeavePinnedBitmapAlone() {
+        final LruBitmapPool pool = new LruBitmapPool(Long.MAX_VALUE);
+        cropView.setBitmapPool(pool);
+        cropView.extensions().crop().executor(queued).into(new File(folder.getRoot(), "cropped.jpg"));
+
+        pool.put(bitmap);
+        Utils.release(pool, bitmap);
+        Utils.recycle(bitmap);
+
+        assertThat(pool.getSize()).isZero();
+        assertThat(bitmap.isRecycled()).isFalse();
+    }
+
+    private void runQueue() {
+        while (!queue.isEmpty()) {
+            queue.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.MotionEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP, shadows = CropTraceTest.RecordingTrace.class)
+public class CropTraceTest {
+
+    private static final int VIEW_SIZE = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CropView cropView;
+
+    @Before
+    public void setUp() {
+        cropView = TestCropViews.showingBitmap(VIEW_SIZE);
+        RecordingTrace.EVENTS.clear();
+    }
+
+    @After
+    public void tearDown() {
+        CropTrace.setEnabled(false);
+    }
+
+    @Test
+    public void tracesNothingUnlessEnabled() throws Exception {
+        draw();
+        touch();
+        cropView.crop();
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).into(new File(folder.getRoot(), "cropped.jpg")).get();
+
+        assertThat(RecordingTrace.EVENTS).isEmpty();
+    }
+
+    @Test
+    public void tracesBitmapAndOverlayWithinDraw() {
+        CropTrace.setEnabled(true);
+
+        draw();
+
+        assertThat(RecordingTrace.EVENTS).containsExactly("begin CropView.onDraw", "begin CropView.drawBitmap", "end",
+                "begin CropView.drawOverlay", "end", "end");
+    }
+
+    @Test
+    public void tracesTouchEvents() {
+        CropTrace.setEnabled(true);
+
+        touch();
+
+        assertThat(RecordingTrace.EVENTS).containsExactly("begin TouchManager.onEvent", "end");
+    }
+
+    @Test
+    public void tracesSynchronousCrop() {
+        CropTrace.setEnabled(true);
+
+        cropView.crop();
+
+        assertThat(RecordingTrace.EVENTS).containsExactly("begin CropView.crop", "end");
+    }
+
+    @Test
+    public void tracesCropJobFromSubmitToDone() throws Exception {
+        CropTrace.setEnabled(true);
+
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).into(new File(folder.getRoot(), "cropped.jpg")).get();
+
+        assertThat(RecordingTrace.EVENTS).containsExactly("beginAsync Utils.flushToFile", "begin Utils.crop", "end",
+                "begin Utils.write", "begin Utils.compress", "end", "end", "endAsync Utils.flushToFile");
+    }
+
+    @Test
+    public void endsSliceOfJobCancelledWhileQueued() {
+        CropTrace.setEnabled(true);
+        final List<Runnable> queue = new ArrayList<>();
+
+        final Future<Void> future = Utils.submit(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        }, CropRequest.Priority.NORMAL, "test", new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        future.cancel(false);
+
+        assertThat(RecordingTrace.EVENTS).containsExactly("beginAsync test", "endAsync test");
+    }
+
+    private void draw() {
+        cropView.onDraw(new Canvas(Bitmap.createBitmap(VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888)));
+    }
+
+    private void touch() {
+        final long now = SystemClock.uptimeMillis();
+        final MotionEvent event = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 250, 250, 0);
+        cropView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    @Implements(Trace.class)
+    public static class RecordingTrace {
+
+        static final List<String> EVENTS = new ArrayList<>();
+
+        @Implementation
+        public static void beginSection(String sectionName) {
+            EVENTS.add("begin " + sectionName);
+        }
+
+        @Implementation
+        public static void endSection() {
+            EVENTS.add("end");
+        }
+
+        @Implementation
+        public static void asyncTraceBegin(long traceTag, String methodName, int cookie) {
+            EVENTS.add("beginAsync " + methodName);
+        }
+
+        @Implementation
+        public static void asyncTraceEnd(long traceTag, String methodName, int cookie) {
+            EVENTS.add("endAsync " + methodName);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DisplayConfigTest {
+
+    @Test
+    public void sourceKeepsLoadedConfig() {
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.SOURCE, false)).isNull();
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.SOURCE, true)).isNull();
+    }
+
+    @Test
+    public void lowMemoryOnlyDropsAlphaOfOpaqueBitmaps() {
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.LOW_MEMORY, false)).isEqualTo(Bitmap.Config.RGB_565);
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.LOW_MEMORY, true)).isEqualTo(Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void hardwareFallsBackToLowMemoryBeforeOreo() {
+        assertThat(Utils.hardwareConfig()).isNull();
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.HARDWARE, false)).isEqualTo(Bitmap.Config.RGB_565);
+        assertThat(Utils.displayConfig(CropView.DisplayConfig.HARDWARE, true)).isEqualTo(Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void scaledBitmapTakesDisplayConfig() {
+        final Bitmap source = Bitmap.createBitmap(100, 50, Bitmap.Config.ARGB_8888);
+        source.setHasAlpha(false);
+
+        final Bitmap scaled = Utils.scaleForDisplay(source, 50, 25, CropView.DisplayConfig.LOW_MEMORY);
+
+        assertThat(scaled.getWidth()).isEqualTo(50);
+        assertThat(scaled.getHeight()).isEqualTo(25);
+        assertThat(scaled.getConfig()).isEqualTo(Bitmap.Config.RGB_565);
+    }
+}
@@ -0,0 +1,123 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.Shadow;
+
+/**
+ * Region decoder of an original of {@link #setSize(int, int) given size}, decoding blank bitmaps of the requested region and
+ * sample size and keeping track of them.
+ */
+@Implements(BitmapRegionDecoder.class)
+public class FakeRegionDecoder {
+
+    private static final List<Rect> REGIONS = new ArrayList<>();
+    private static final List<Integer> SAMPLE_SIZES = new ArrayList<>();
+    private static int width;
+    private static int height;
+    private static int openedCount;
+    private static int recycledCount;
+    private static Runnable onDecode;
+
+    private boolean recycled;
+
+    /**
+     * Sets the size of originals opened from now on, and forgets previous decodes and decoders.
+     */
+    public static synchronized void setSize(int width, int height) {
+        FakeRegionDecoder.width = width;
+        FakeRegionDecoder.height = height;
+        REGIONS.clear();
+        SAMPLE_SIZES.clear();
+        openedCount = 0;
+        recycledCount = 0;
+        onDecode = null;
+    }
+
+    /**
+     * Runs {@code action} within the next decode, before it returns.
+     */
+    public static synchronized void onNextDecode(Runnable action) {
+        onDecode = action;
+    }
+
+    public static synchronized int openedCount() {
+        return openedCount;
+    }
+
+    public static synchronized int recycledCount() {
+        return recycledCount;
+    }
+
+    public static synchronized List<Rect> decodedRegions() {
+        return new ArrayList<>(REGIONS);
+    }
+
+    public static synchronized List<Integer> decodedSampleSizes() {
+        return new ArrayList<>(SAMPLE_SIZES);
+    }
+
+    @Implementation
+    public static BitmapRegionDecoder newInstance(InputStream inputStream, boolean isShareable) {
+        synchronized (FakeRegionDecoder.class) {
+            openedCount++;
+        }
+        return Shadow.newInstanceOf(BitmapRegionDecoder.class);
+    }
+
+    @Implementation
+    public int getWidth() {
+        synchronized (FakeRegionDecoder.class) {
+            return width;
+        }
+    }
+
+    @Implementation
+    public int getHeight() {
+        synchronized (FakeRegionDecoder.class) {
+            return height;
+        }
+    }
+
+    @Implementation
+    public Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+        if (recycled) {
+            throw new IllegalStateException("Decoder recycled");
+        }
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        final Runnable action;
+        synchronized (FakeRegionDecoder.class) {
+            REGIONS.add(new Rect(rect));
+            SAMPLE_SIZES.add(sampleSize);
+            action = onDecode;
+            onDecode = null;
+        }
+        if (action != null) {
+            action.run();
+        }
+        return Bitmap.createBitmap((rect.width() + sampleSize - 1) / sampleSize, (rect.height() + sampleSize - 1) / sampleSize,
+                Bitmap.Config.ARGB_8888);
+    }
+
+    @Implementation
+    public void recycle() {
+        if (!recycled) {
+            recycled = true;
+            synchronized (FakeRegionDecoder.class) {
+                recycledCount++;
+            }
+        }
+    }
+
+    @Implementation
+    public boolean isRecycled() {
+        return recycled;
+    }
+}
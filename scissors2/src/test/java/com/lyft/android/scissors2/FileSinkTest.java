@@ -0,0 +1,80 @@
+package com.lyft.android.scissors2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class FileSinkTest {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesIntoMissingDirectory() throws IOException {
+        final File file = new File(folder.getRoot(), "crops/cropped.jpg");
+
+        WriteResult result = FileSink.write(file, true, content("cropped"));
+
+        assertThat(read(file)).isEqualTo("cropped");
+        assertThat(result.getFile()).isEqualTo(file);
+        assertThat(result.getByteCount()).isEqualTo(7);
+        assertThat(result.isSynced()).isTrue();
+        assertThat(file.getParentFile().list()).containsOnly("cropped.jpg");
+    }
+
+    @Test
+    public void replacesExistingFile() throws IOException {
+        final File file = folder.newFile("cropped.jpg");
+        FileSink.write(file, false, content("previous crop"));
+
+        FileSink.write(file, false, content("new"));
+
+        assertThat(read(file)).isEqualTo("new");
+        assertThat(folder.getRoot().list()).containsOnly("cropped.jpg");
+    }
+
+    @Test
+    public void failedWriteLeavesExistingFileUntouched() throws IOException {
+        final File file = folder.newFile("cropped.jpg");
+        FileSink.write(file, false, content("previous crop"));
+
+        try {
+            FileSink.write(file, false, new FileSink.Content() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    outputStream.write(new byte[FileSink.BUFFER_SIZE * 2]);
+                    throw new IOException("Crashed while encoding");
+                }
+            });
+            fail("Expected failure");
+        } catch (IOException expected) {
+            assertThat(expected).hasMessage("Crashed while encoding");
+        }
+
+        assertThat(read(file)).isEqualTo("previous crop");
+        assertThat(folder.getRoot().list()).containsOnly("cropped.jpg");
+    }
+
+    private static FileSink.Content content(final String content) {
+        return new FileSink.Content() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(content.getBytes(UTF_8));
+            }
+        };
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.lyft.android.scissors2;
+
+import com.lyft.android.scissors2.geometry.CropState;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class GestureAllocationTest {
+
+    private static final int EVENTS = 10000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private CropState state;
+    private TouchPoint point;
+
+    @Before
+    public void setUp() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        state = new CropState(CropViewConfig.DEFAULT_MINIMUM_SCALE, CropViewConfig.DEFAULT_MAXIMUM_SCALE);
+        state.reset(4000, 3000, 1080, 1920);
+        point = new TouchPoint();
+    }
+
+    @Test
+    public void scrollAndScaleDoNotAllocate() {
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EVENTS; i++) {
+                    state.translate(i % 2 == 0 ? 3f : -3f, 1f);
+                    state.scaleBy(i % 2 == 0 ? 1.01f : 0.99f);
+                    state.setFocus(540f, 960f);
+                }
+                state.ensureInsideViewport();
+            }
+        });
+    }
+
+    @Test
+    public void doubleTapTargetDoesNotAllocate() {
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EVENTS; i++) {
+                    TouchManager.mapTouchCoordinateToMatrix(state, i % 1080, i % 1920, state.getMaximumScale() / 2, point);
+                    TouchManager.centerCoordinates(state, point);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void doubleTapTargetCentersTouchedPoint() {
+        state.setScale(state.getMinimumScale());
+        final float targetScale = state.getMaximumScale() / 2;
+
+        TouchManager.mapTouchCoordinateToMatrix(state, 0, 0, targetScale, point);
+        TouchManager.centerCoordinates(state, point);
+
+        assertThat(point.getX()).isEqualTo(4000 * targetScale / 2 + state.getCenterX() / 2);
+        assertThat(point.getY()).isEqualTo(3000 * targetScale / 2 + state.getCenterY() / 2);
+    }
+
+    /**
+     * Runs {@code events} once to load classes, then asserts that running them again allocates nothing.
+     */
+    private void assertNoAllocation(Runnable events) {
+        events.run();
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        events.run();
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Less than a byte per event, which leaves room for the bean itself but not for a single object per event
+        assertThat(allocated).isLessThan(EVENTS);
+    }
+}
@@ -0,0 +1,364 @@
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.widget.ImageView;
+import android.widget.OverScroller;
+import com.lyft.android.scissors2.geometry.CropState;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.Shadow;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowMotionEvent;
+import org.robolectric.shadows.ShadowVelocityTracker;
+import org.robolectric.shadows.ShadowViewConfiguration;
+import org.robolectric.util.Scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Replays canned gestures through {@link TouchManager}, on the clock of the main looper so that animations run in between
+ * events, and checks the time spent and bytes allocated per event along with the number of redraws against limits.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(manifest = Config.NONE,
+        shadows = {
+                GestureReplayTest.RealScaleGestureDetector.class,
+                GestureReplayTest.RealOverScroller.class,
+                GestureReplayTest.UnpooledVelocityTracker.class,
+                GestureReplayTest.VsyncChoreographer.class,
+                GestureReplayTest.PhoneViewConfiguration.class
+        })
+public class GestureReplayTest {
+
+    static final String FAST_FLING = "Fast fling";
+    static final String PINCH = "Pinch";
+    static final String DOUBLE_TAP_STORM = "Double tap storm";
+
+    /**
+     * Time allowed for the bitmap to settle once the gesture is over.
+     */
+    private static final long SETTLE_MS = 1000;
+    private static final long MEAN_EVENT_TIME_LIMIT_NS = 4000000;
+    private static final int WARM_UP_REPLAYS = 3;
+    private static final int MEASURED_REPLAYS = 5;
+
+    /**
+     * Gestures checked in as written by {@link GestureTrace#writeTo(java.io.OutputStream)}, along with the most bytes each may
+     * allocate per event and the most redraws it may take. Bytes are mostly allocated by the framework detectors and by
+     * Robolectric dispatching calls to shadows, which {@link TouchAllocationTest} tells apart. Redraws are at most one per
+     * event or frame.
+     */
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                // Swipes 450px right to left in 80ms, leaving the bitmap room to keep moving
+                { FAST_FLING, "fast_fling.trace", 6144, 20 },
+                // Spreads two fingers from the center of the viewport to its edges over half a second, then lifts them one
+                // at a time
+                { PINCH, "pinch.trace", 4096, 34 },
+                // Double taps ten times in a row around the viewport, each double tap starting a zoom interrupted by the
+                // next one
+                { DOUBLE_TAP_STORM, "double_tap_storm.trace", 12288, 320 }
+        });
+    }
+
+    final String name;
+    private final String fileName;
+    private final long maxBytesPerEvent;
+    private final int maxInvalidations;
+
+    private GestureTrace trace;
+    private CountingImageView view;
+    private TouchManager touchManager;
+
+    public GestureReplayTest(String name, String fileName, int maxBytesPerEvent, int maxInvalidations) {
+        this.name = name;
+        this.fileName = fileName;
+        this.maxBytesPerEvent = maxBytesPerEvent;
+        this.maxInvalidations = maxInvalidations;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        trace = readTrace(fileName);
+        view = new CountingImageView(RuntimeEnvironment.application);
+        touchManager = createTouchManager(view);
+    }
+
+    private static TouchManager createTouchManager(ImageView view) {
+        final CropViewConfig config = CropViewConfig.from(view.getContext(), null);
+        config.setViewportRatio(1f);
+        final TouchManager touchManager = new TouchManager(view, config);
+        // 2667x1000 once scaled into a 1000x1000 viewport, leaving room to fling sideways
+        touchManager.resetFor(8000, 3000, 0, 1000, 1000);
+        return touchManager;
+    }
+
+    @Test
+    public void traceSurvivesFile() throws IOException {
+        final GestureTrace read = readBack(trace);
+
+        assertThat(read.size()).isEqualTo(trace.size());
+        for (int i = 0; i < trace.size(); i++) {
+            assertThat(read.getEventTime(i)).isEqualTo(trace.getEventTime(i) - trace.getEventTime(0));
+            assertThat(read.getAction(i)).isEqualTo(trace.getAction(i));
+            assertThat(read.getPointerCount(i)).isEqualTo(trace.getPointerCount(i));
+            for (int p = 0; p < trace.getPointerCount(i); p++) {
+                assertThat(read.getPointerId(i, p)).isEqualTo(trace.getPointerId(i, p));
+                assertThat(read.getX(i, p)).isEqualTo(trace.getX(i, p));
+                assertThat(read.getY(i, p)).isEqualTo(trace.getY(i, p));
+            }
+        }
+    }
+
+    @Test
+    public void replayStaysWithinBudget() throws IOException {
+        final GestureTrace read = readBack(trace);
+        // Classes are loaded and instrumented on first use, which would otherwise dominate timings
+        for (int i = 0; i < WARM_UP_REPLAYS; i++) {
+            final CountingImageView warmUpView = new CountingImageView(RuntimeEnvironment.application);
+            replay(read, createTouchManager(warmUpView), warmUpView);
+        }
+
+        // Reflection also allocates now and then as the JVM generates accessors for the shadows Robolectric calls, so that
+        // the lowest figures of a few replays are kept
+        long meanNanos = Long.MAX_VALUE;
+        long bytesPerEvent = Long.MAX_VALUE;
+        Report report = null;
+        for (int i = 0; i < MEASURED_REPLAYS; i++) {
+            final CountingImageView replayView = new CountingImageView(RuntimeEnvironment.application);
+            final TouchManager replayTouchManager = createTouchManager(replayView);
+            report = replay(read, replayTouchManager, replayView);
+            meanNanos = Math.min(meanNanos, report.meanNanos());
+            bytesPerEvent = Math.min(bytesPerEvent, report.bytesPerEvent());
+            assertThat(replayTouchManager.isMoving()).isFalse();
+        }
+
+        assertThat(meanNanos).as(report.toString()).isLessThan(MEAN_EVENT_TIME_LIMIT_NS);
+        assertThat(bytesPerEvent).as(report.toString()).isLessThanOrEqualTo(maxBytesPerEvent);
+        assertThat(report.invalidations).as(report.toString()).isGreaterThan(0).isLessThanOrEqualTo(maxInvalidations);
+    }
+
+    @Test
+    public void replayMovesBitmap() throws IOException {
+        replay(readBack(trace), touchManager, view);
+
+        final CropState state = touchManager.copyState();
+        switch (name) {
+            case FAST_FLING:
+                // Carried on past the swipe up to the edge of the bitmap
+                assertThat(state.getPositionX()).isEqualTo(state.getMinimumPositionX());
+                break;
+            case PINCH:
+                assertThat(state.getScale()).isGreaterThan(state.getMinimumScale());
+                break;
+            case DOUBLE_TAP_STORM:
+                // Settled on either zoom level double taps toggle between, however many zooms got interrupted
+                assertThat(state.getScale()).isIn(state.getMinimumScale(), state.getMaximumScale() / 2);
+                break;
+            default:
+                fail("Unexpected gesture " + name);
+        }
+    }
+
+    /**
+     * Feeds every event of {@code trace} to {@link TouchManager#onEvent(MotionEvent)} at the time it was recorded, running
+     * animation frames due in between.
+     */
+    private static Report replay(GestureTrace trace, TouchManager touchManager, CountingImageView view) {
+        final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        final com.sun.management.ThreadMXBean allocations = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean
+                : null;
+        final long threadId = Thread.currentThread().getId();
+        final Report report = new Report();
+
+        long downTime = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            if (i > 0) {
+                scheduler.advanceBy(trace.getEventTime(i) - trace.getEventTime(i - 1));
+            }
+            final long eventTime = SystemClock.uptimeMillis();
+            if ((trace.getAction(i) & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+                downTime = eventTime;
+            }
+            final MotionEvent event = obtain(trace, i, downTime, eventTime);
+
+            final long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : 0;
+            final long start = System.nanoTime();
+            touchManager.onEvent(event);
+            final long nanos = System.nanoTime() - start;
+            final long allocated = allocations != null ? allocations.getThreadAllocatedBytes(threadId) - allocatedBefore : 0;
+
+            report.add(nanos, allocated);
+            event.recycle();
+        }
+        scheduler.advanceBy(SETTLE_MS);
+        report.invalidations = view.invalidations;
+        return report;
+    }
+
+    /**
+     * @return The event at {@code index} of {@code trace}, of at most two pointers as shadow events only hold two.
+     */
+    static MotionEvent obtain(GestureTrace trace, int index, long downTime, long eventTime) {
+        final int action = trace.getAction(index);
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action & MotionEvent.ACTION_MASK,
+                trace.getX(index, 0), trace.getY(index, 0), 0);
+        final ShadowMotionEvent shadow = (ShadowMotionEvent) ShadowExtractor.extract(event);
+        shadow.setPointerIndex((action & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        if (trace.getPointerCount(index) > 1) {
+            shadow.setPointer2(trace.getX(index, 1), trace.getY(index, 1));
+            shadow.setPointerIds(trace.getPointerId(index, 0), trace.getPointerId(index, 1));
+        }
+        return event;
+    }
+
+    /**
+     * @return The trace checked in as {@code fileName} next to this class.
+     */
+    static GestureTrace readTrace(String fileName) throws IOException {
+        final InputStream inputStream = GestureReplayTest.class.getResourceAsStream(fileName);
+        assertThat(inputStream).as(fileName).isNotNull();
+        try {
+            return GestureTrace.readFrom(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static GestureTrace readBack(GestureTrace trace) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        trace.writeTo(outputStream);
+        return GestureTrace.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    static class Report {
+
+        int events;
+        long totalNanos;
+        long maxNanos;
+        long allocatedBytes;
+        int invalidations;
+
+        void add(long nanos, long allocated) {
+            events++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            allocatedBytes += allocated;
+        }
+
+        long meanNanos() {
+            return events > 0 ? totalNanos / events : 0;
+        }
+
+        long bytesPerEvent() {
+            return events > 0 ? allocatedBytes / events : 0;
+        }
+
+        @Override
+        public String toString() {
+            return events + " events, " + meanNanos() / 1000 + "us mean, " + maxNanos / 1000 + "us max, "
+                    + bytesPerEvent() + " bytes allocated per event, " + invalidations
+                    + " invalidations";
+        }
+    }
+
+    /**
+     * Runs the real {@link ScaleGestureDetector} rather than the default shadow, which never detects scaling.
+     */
+    @Implements(value = ScaleGestureDetector.class, callThroughByDefault = true)
+    public static class RealScaleGestureDetector {
+    }
+
+    /**
+     * Runs the real {@link OverScroller} rather than the default shadow, which never flings.
+     */
+    @Implements(value = OverScroller.class, callThroughByDefault = true)
+    public static class RealOverScroller {
+    }
+
+    /**
+     * Hands out a new tracker every time, as recycled shadow trackers keep movements of the pointers they last tracked and
+     * would carry them over into the velocities of a later test.
+     */
+    @Implements(VelocityTracker.class)
+    public static class UnpooledVelocityTracker extends ShadowVelocityTracker {
+
+        @Implementation
+        public static VelocityTracker obtain() {
+            return Shadow.newInstanceOf(VelocityTracker.class);
+        }
+    }
+
+    /**
+     * Runs frames 16ms apart rather than right away, which would never let an animation advance in time.
+     */
+    @Implements(Choreographer.class)
+    public static class VsyncChoreographer extends ShadowChoreographer {
+
+        @Implementation
+        @Override
+        public void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis) {
+            super.postFrameCallbackDelayed(callback, delayMillis + 16);
+        }
+    }
+
+    /**
+     * Caps fling velocities as a phone three times as dense as the default shadow display would, which is well above the
+     * velocity {@link TouchManager} starts flinging at.
+     */
+    @Implements(ViewConfiguration.class)
+    public static class PhoneViewConfiguration extends ShadowViewConfiguration {
+
+        @Implementation
+        @Override
+        public int getScaledMaximumFlingVelocity() {
+            return super.getScaledMaximumFlingVelocity() * 3;
+        }
+    }
+
+    private static class CountingImageView extends ImageView {
+
+        int invalidations;
+
+        CountingImageView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate() {
+            invalidations++;
+        }
+
+        @Override
+        public void postInvalidateOnAnimation() {
+            invalidations++;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.lyft.android.scissors2;
+
+import android.view.MotionEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class GestureTraceTest {
+
+    @Test
+    public void recordsEventsDispatchedToCropView() {
+        final CropView cropView = new CropView(RuntimeEnvironment.application);
+        final GestureTrace trace = new GestureTrace();
+        cropView.setGestureTrace(trace);
+
+        final MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 10, 20, 0);
+        final MotionEvent up = MotionEvent.obtain(0, 50, MotionEvent.ACTION_UP, 30, 40, 0);
+        final MotionEvent unrecorded = MotionEvent.obtain(1000, 1000, MotionEvent.ACTION_DOWN, 10, 20, 0);
+        cropView.dispatchTouchEvent(down);
+        cropView.dispatchTouchEvent(up);
+        cropView.setGestureTrace(null);
+        cropView.dispatchTouchEvent(unrecorded);
+
+        assertThat(trace.size()).isEqualTo(2);
+        assertThat(trace.getAction(0)).isEqualTo(MotionEvent.ACTION_DOWN);
+        assertThat(trace.getAction(1)).isEqualTo(MotionEvent.ACTION_UP);
+        assertThat(trace.getEventTime(1)).isEqualTo(50);
+        assertThat(trace.getPointerCount(1)).isEqualTo(1);
+        assertThat(trace.getX(1, 0)).isEqualTo(30);
+        assertThat(trace.getY(1, 0)).isEqualTo(40);
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        try {
+            GestureTrace.readFrom(new ByteArrayInputStream(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0, 0 }));
+            fail("Expected failure");
+        } catch (IOException expected) {
+            assertThat(expected).hasMessage("Not a gesture trace");
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPoolAdapter;
+import com.nostra13.universalimageloader.core.assist.LoadedFrom;
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs synthetic images of typical and extreme sizes through loading, cropping and encoding, and bounds the bytes held by bitmaps
+ * along the way as well as the time taken. Images only have a header, which is all shadow decoding reads.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = TrackingShadowBitmap.class)
+public class LargeImageTest {
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} [{1}x{2}]")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { "12MP", 4000, 3000 },
+                { "48MP", 8000, 6000 },
+                { "Panorama", 20000, 2000 },
+                { "Tiny", 64, 48 },
+                { "Tall", 1000, 8000 },
+                { "Strip", 12000, 600 }
+        });
+    }
+
+    private static final int VIEW_SIZE = 1080;
+    private static final long TIME_LIMIT_MS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    final int width;
+    final int height;
+
+    private Context context;
+    private CropView cropView;
+    private File image;
+    private long startTime;
+    private long startBytes;
+
+    public LargeImageTest(String name, int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.application;
+        cropView = TestCropViews.laidOut(VIEW_SIZE);
+        cropView.setBitmapPool(null);
+        image = writePngHeader(folder.newFile("image.png"), width, height);
+    }
+
+    @Test
+    public void nativeLoaderDecodesSampled() {
+        final long targetBytes = targetBytes();
+        final BitmapLoader loader = new NativeBitmapLoader(context, cropView.getViewportWidth(),
+                cropView.getViewportHeight(), CropViewConfig.DEFAULT_DISPLAY_CONFIG, null, TestCropViews.DIRECT);
+
+        startStage();
+        loader.load(image, cropView);
+        endStage();
+
+        assertLoaded();
+        // A sample decoded at most twice the target size each way, then scaled down to the target
+        assertPeakAtMost(5 * targetBytes);
+    }
+
+    @Test
+    public void picassoTransformationHoldsSourceAndTarget() throws IOException {
+        final Bitmap source = decodeFully();
+
+        startStage();
+        final Bitmap result = PicassoFillViewportTransformation.createUsing(cropView.getViewportWidth(),
+                cropView.getViewportHeight()).transform(source);
+        endStage();
+
+        assertFillsViewport(result);
+        assertPeakAtMost(bytesOf(width, height) + targetBytes());
+    }
+
+    @Test
+    public void glideTransformationHoldsSourceAndTarget() throws IOException {
+        final Bitmap source = decodeFully();
+        final GlideFillViewportTransformation transformation = new GlideFillViewportTransformation(
+                cropView.getViewportWidth(), cropView.getViewportHeight(), CropViewConfig.DEFAULT_DISPLAY_CONFIG);
+
+        startStage();
+        final Bitmap result = transformation.transform(new BitmapPoolAdapter(), source, width, height);
+        endStage();
+
+        assertFillsViewport(result);
+        assertPeakAtMost(bytesOf(width, height) + targetBytes());
+    }
+
+    @Test
+    public void uilDisplayerHoldsSourceAndTarget() throws IOException {
+        final Bitmap source = decodeFully();
+
+        startStage();
+        UILFillViewportDisplayer.createUsing(cropView.getViewportWidth(), cropView.getViewportHeight())
+                .display(source, new ImageViewAware(cropView), LoadedFrom.DISC_CACHE);
+        endStage();
+
+        assertFillsViewport(cropView.getImageBitmap());
+        assertPeakAtMost(bytesOf(width, height) + targetBytes());
+    }
+
+    @Test
+    public void cropAllocatesViewportOnly() {
+        load();
+
+        startStage();
+        final Bitmap cropped = cropView.crop();
+        endStage();
+
+        assertThat(cropped.getWidth()).isEqualTo(cropView.getViewportWidth());
+        assertThat(cropped.getHeight()).isEqualTo(cropView.getViewportHeight());
+        assertPeakAtMost(viewportBytes());
+    }
+
+    @Test
+    public void cropIntoFileAllocatesViewportOnly() throws Exception {
+        load();
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+
+        startStage();
+        final WriteResult result = cropView.extensions().crop().executor(TestCropViews.DIRECT).intoWithResult(output).get();
+        endStage();
+
+        assertThat(result.getFile()).isEqualTo(output);
+        assertThat(output.length()).isGreaterThan(0);
+        assertPeakAtMost(viewportBytes());
+    }
+
+    @Test
+    public void cropIntoFileInStripsStaysWithinMaxMemory() throws Exception {
+        load();
+        final File output = new File(folder.getRoot(), "cropped.jpg");
+        final long maxMemory = viewportBytes() / 8;
+
+        startStage();
+        final WriteResult result = cropView.extensions().crop().executor(TestCropViews.DIRECT).maxMemory(maxMemory).intoWithResult(output)
+                .get();
+        endStage();
+
+        assertThat(result.getFile()).isEqualTo(output);
+        assertThat(output.length()).isGreaterThan(0);
+        assertPeakAtMost(maxMemory);
+    }
+
+    private void load() {
+        new NativeBitmapLoader(context, cropView.getViewportWidth(), cropView.getViewportHeight(),
+                CropViewConfig.DEFAULT_DISPLAY_CONFIG, null, TestCropViews.DIRECT).load(image, cropView);
+        assertLoaded();
+    }
+
+    private Bitmap decodeFully() throws IOException {
+        final InputStream inputStream = new FileInputStream(image);
+        final Bitmap source;
+        try {
+            source = BitmapFactory.decodeStream(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        assertThat(source.getWidth()).isEqualTo(width);
+        assertThat(source.getHeight()).isEqualTo(height);
+        return source;
+    }
+
+    private void startStage() {
+        TrackingShadowBitmap.resetPeak();
+        startBytes = TrackingShadowBitmap.liveBytes();
+        startTime = System.nanoTime();
+    }
+
+    private void endStage() {
+        assertThat((System.nanoTime() - startTime) / 1000000).isLessThan(TIME_LIMIT_MS);
+    }
+
+    private void assertPeakAtMost(long bytes) {
+        assertThat(TrackingShadowBitmap.peakBytes() - startBytes).isLessThanOrEqualTo(bytes);
+    }
+
+    private void assertLoaded() {
+        assertFillsViewport(cropView.getImageBitmap());
+    }
+
+    private void assertFillsViewport(Bitmap bitmap) {
+        final Rect target = targetSize();
+        assertThat(bitmap).isNotNull();
+        assertThat(bitmap.getWidth()).isEqualTo(target.width());
+        assertThat(bitmap.getHeight()).isEqualTo(target.height());
+    }
+
+    private Rect targetSize() {
+        return CropViewExtensions.computeTargetSize(width, height, cropView.getViewportWidth(), cropView.getViewportHeight());
+    }
+
+    private long targetBytes() {
+        final Rect target = targetSize();
+        return bytesOf(target.width(), target.height());
+    }
+
+    private long viewportBytes() {
+        return bytesOf(cropView.getViewportWidth(), cropView.getViewportHeight());
+    }
+
+    private static long bytesOf(int width, int height) {
+        return (long) width * height * 4;
+    }
+
+    /**
+     * Writes the signature and header of a {@code width x height} 8-bit RGBA PNG, without any pixel data.
+     */
+    static File writePngHeader(File file, int width, int height) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' });
+            final byte[] chunk = new byte[17];
+            System.arraycopy("IHDR".getBytes("US-ASCII"), 0, chunk, 0, 4);
+            writeInt(chunk, 4, width);
+            writeInt(chunk, 8, height);
+            chunk[12] = 8;
+            chunk[13] = 6;
+            final CRC32 crc = new CRC32();
+            crc.update(chunk);
+            out.writeInt(13);
+            out.write(chunk);
+            out.writeInt((int) crc.getValue());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
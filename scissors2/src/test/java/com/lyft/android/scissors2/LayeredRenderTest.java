@@ -0,0 +1,161 @@
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowView;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = LayeredRenderTest.TranslatedView.class)
+public class LayeredRenderTest {
+
+    private static final int VIEW_SIZE = 500;
+
+    private FrameLayout parent;
+    private CountingCropView cropView;
+    private long downTime;
+    private long eventTime;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        parent = new FrameLayout(context);
+        cropView = new CountingCropView(context);
+        cropView.setViewportRatio(1f);
+        cropView.setRenderMode(CropView.RenderMode.LAYERED);
+        parent.addView(cropView, new FrameLayout.LayoutParams(VIEW_SIZE, VIEW_SIZE));
+        // Without a window to attach to
+        cropView.onAttachedToWindow();
+        layout();
+        // 1000x500 once scaled into a 500x500 viewport, so that it only moves horizontally
+        cropView.setImageBitmap(Bitmap.createBitmap(2000, 1000, Bitmap.Config.ARGB_8888));
+        cropView.invalidations = 0;
+    }
+
+    @Test
+    public void bitmapLayerIsLaidOutOverViewport() {
+        final View bitmapLayer = cropView.bitmapLayer();
+
+        assertThat(bitmapLayer).isNotNull();
+        assertThat(bitmapLayer.getWidth()).isEqualTo(2000);
+        assertThat(bitmapLayer.getScaleX()).isEqualTo(0.5f);
+        assertThat(bitmapLayer.getTranslationX()).isEqualTo(-250f);
+        assertThat(bitmapLayer.getTranslationY()).isEqualTo(0f);
+    }
+
+    @Test
+    public void dragMovesBitmapLayerWithoutRedrawingView() {
+        drag();
+
+        assertThat(cropView.bitmapLayer().getTranslationX()).isEqualTo(-50f);
+        assertThat(cropView.invalidations).isZero();
+    }
+
+    @Test
+    public void directModeRedrawsView() {
+        cropView.setRenderMode(CropView.RenderMode.DIRECT);
+        cropView.invalidations = 0;
+
+        drag();
+
+        assertThat(cropView.bitmapLayer()).isNull();
+        assertThat(cropView.invalidations).isEqualTo(2);
+    }
+
+    @Test
+    public void detachedViewRedrawsItself() {
+        cropView.onDetachedFromWindow();
+
+        drag();
+
+        assertThat(cropView.bitmapLayer()).isNull();
+        assertThat(cropView.invalidations).isEqualTo(2);
+    }
+
+    private void layout() {
+        parent.measure(View.MeasureSpec.makeMeasureSpec(VIEW_SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_SIZE, View.MeasureSpec.EXACTLY));
+        parent.layout(0, 0, VIEW_SIZE, VIEW_SIZE);
+    }
+
+    /**
+     * Drags the bitmap 200px right in two moves, slow enough never to fling.
+     */
+    private void drag() {
+        touch(MotionEvent.ACTION_DOWN, 100, 250);
+        touch(MotionEvent.ACTION_MOVE, 200, 250);
+        touch(MotionEvent.ACTION_MOVE, 300, 250);
+        touch(MotionEvent.ACTION_UP, 300, 250);
+    }
+
+    private void touch(int action, float x, float y) {
+        eventTime += 1000;
+        if (action == MotionEvent.ACTION_DOWN) {
+            downTime = eventTime;
+        }
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        cropView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private static class CountingCropView extends CropView {
+
+        int invalidations;
+
+        CountingCropView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate() {
+            invalidations++;
+        }
+
+        @Override
+        public void postInvalidateOnAnimation() {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Keeps translations, which the default shadow hands to a render node that drops them.
+     */
+    @Implements(View.class)
+    public static class TranslatedView extends ShadowView {
+
+        private float translationX;
+        private float translationY;
+
+        @Implementation
+        public void setTranslationX(float translationX) {
+            this.translationX = translationX;
+        }
+
+        @Implementation
+        public float getTranslationX() {
+            return translationX;
+        }
+
+        @Implementation
+        public void setTranslationY(float translationY) {
+            this.translationY = translationY;
+        }
+
+        @Implementation
+        public float getTranslationY() {
+            return translationY;
+        }
+    }
+}
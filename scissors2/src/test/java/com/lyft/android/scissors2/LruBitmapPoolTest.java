@@ -0,0 +1,72 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.shadows.ShadowBitmap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class LruBitmapPoolTest {
+
+    private static final int SIZE = 100;
+    private static final long BYTES = SIZE * SIZE * 4;
+
+    @Test
+    public void bitmapsAreOnlyReturnedForTheirWidthHeightAndConfig() {
+        final LruBitmapPool pool = new LruBitmapPool(Long.MAX_VALUE);
+        final Bitmap bitmap = bitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888, true);
+        pool.put(bitmap);
+
+        assertThat(pool.get(SIZE, SIZE, Bitmap.Config.RGB_565)).isNull();
+        assertThat(pool.get(SIZE, SIZE / 2, Bitmap.Config.ARGB_8888)).isNull();
+        assertThat(pool.get(SIZE / 2, SIZE, Bitmap.Config.ARGB_8888)).isNull();
+        assertThat(pool.get(SIZE, SIZE, Bitmap.Config.ARGB_8888)).isSameAs(bitmap);
+        assertThat(pool.get(SIZE, SIZE, Bitmap.Config.ARGB_8888)).isNull();
+        assertThat(pool.getSize()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedSizesAreEvictedOnceOverMaxBytes() {
+        final LruBitmapPool pool = new LruBitmapPool(2 * BYTES);
+        final Bitmap square = bitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888, true);
+        final Bitmap tall = bitmap(SIZE / 2, SIZE * 2, Bitmap.Config.ARGB_8888, true);
+        final Bitmap wide = bitmap(SIZE * 2, SIZE / 2, Bitmap.Config.ARGB_8888, true);
+        pool.put(square);
+        pool.put(tall);
+        // Uses the square size again, leaving the tall one least recently used
+        pool.put(pool.get(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+
+        pool.put(wide);
+
+        assertThat(tall.isRecycled()).isTrue();
+        assertThat(square.isRecycled()).isFalse();
+        assertThat(wide.isRecycled()).isFalse();
+        assertThat(pool.getSize()).isEqualTo(2 * BYTES);
+        assertThat(pool.get(SIZE / 2, SIZE * 2, Bitmap.Config.ARGB_8888)).isNull();
+        assertThat(pool.get(SIZE, SIZE, Bitmap.Config.ARGB_8888)).isSameAs(square);
+    }
+
+    @Test
+    public void immutableBitmapsAreRecycledRatherThanPooled() {
+        final LruBitmapPool pool = new LruBitmapPool(Long.MAX_VALUE);
+        final Bitmap bitmap = bitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888, false);
+
+        pool.put(bitmap);
+
+        assertThat(bitmap.isRecycled()).isTrue();
+        assertThat(pool.getSize()).isZero();
+        assertThat(pool.get(SIZE, SIZE, Bitmap.Config.ARGB_8888)).isNull();
+    }
+
+    private static Bitmap bitmap(int width, int height, Bitmap.Config config, boolean mutable) {
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        ((ShadowBitmap) ShadowExtractor.extract(bitmap)).setMutable(mutable);
+        return bitmap;
+    }
+}
@@ -0,0 +1,157 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import com.lyft.android.scissors2.geometry.Orientation;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = FakeRegionDecoder.class)
+public class OriginalSourceTest {
+
+    private static final int ORIGINAL_WIDTH = 4000;
+    private static final int ORIGINAL_HEIGHT = 3000;
+    private static final int BITMAP_WIDTH = 400;
+    private static final int BITMAP_HEIGHT = 300;
+    private static final int VIEW_SIZE = 500;
+    // Zoomed in 1.5 times from the scale filling the viewport with the displayed bitmap
+    private static final float SCALE = 2.5f;
+
+    private static final RectF SQUARE = new RectF(50, 0, 350, 300);
+    private static final RectF LANDSCAPE = new RectF(0, 0, 400, 300);
+    private static final RectF BANNER = new RectF(0, 37.5f, 400, 262.5f);
+    private static final RectF PORTRAIT = new RectF(115.625f, 0, 284.375f, 300);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OriginalSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        FakeRegionDecoder.setSize(ORIGINAL_WIDTH, ORIGINAL_HEIGHT);
+        source = new OriginalSource(RuntimeEnvironment.application, folder.newFile("original.jpg"));
+    }
+
+    @Test
+    public void nestedRegionsShareOneDecode() throws Exception {
+        final Bitmap[] bitmaps = source.decodeRegions(new RectF[] { SQUARE, LANDSCAPE }, BITMAP_WIDTH, BITMAP_HEIGHT,
+                OutputSize.ORIGINAL, 0, null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(0, 0, ORIGINAL_WIDTH, ORIGINAL_HEIGHT));
+        assertSize(bitmaps[0], 3000, 3000);
+        assertSize(bitmaps[1], ORIGINAL_WIDTH, ORIGINAL_HEIGHT);
+    }
+
+    @Test
+    public void wideAndTallRegionsAreDecodedInTurn() throws Exception {
+        final Bitmap[] bitmaps = source.decodeRegions(new RectF[] { BANNER, PORTRAIT }, BITMAP_WIDTH, BITMAP_HEIGHT,
+                OutputSize.ORIGINAL, 0, null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(2).doesNotContain(new Rect(0, 0, ORIGINAL_WIDTH, ORIGINAL_HEIGHT));
+        assertSize(bitmaps[0], ORIGINAL_WIDTH, 2250);
+        assertSize(bitmaps[1], 1688, ORIGINAL_HEIGHT);
+    }
+
+    @Test
+    public void maxMemoryLetsWideAndTallRegionsShareOneDecode() throws Exception {
+        final Bitmap[] bitmaps = source.decodeRegions(new RectF[] { BANNER, PORTRAIT }, BITMAP_WIDTH, BITMAP_HEIGHT,
+                OutputSize.ORIGINAL, ORIGINAL_WIDTH * ORIGINAL_HEIGHT * 4L, null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(0, 0, ORIGINAL_WIDTH, ORIGINAL_HEIGHT));
+        assertSize(bitmaps[0], ORIGINAL_WIDTH, 2250);
+        assertSize(bitmaps[1], 1688, ORIGINAL_HEIGHT);
+    }
+
+    @Test
+    public void regionsDecodedInTurnAreSampledToTheirOwnOutput() throws Exception {
+        source.decodeRegions(new RectF[] { BANNER, PORTRAIT }, BITMAP_WIDTH, BITMAP_HEIGHT, OutputSize.atMost(500, 500),
+                0, null);
+
+        assertThat(FakeRegionDecoder.decodedSampleSizes()).containsExactly(8, 4);
+    }
+
+    @Test
+    public void zoomedAndPannedViewportIsDecodedFromMatchingSourcePixels() throws Exception {
+        final Bitmap bitmap = source.decodeRegion(viewport(160, 120), BITMAP_WIDTH, BITMAP_HEIGHT, OutputSize.ORIGINAL, null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(600, 200, 2600, 2200));
+        assertThat(FakeRegionDecoder.decodedSampleSizes()).containsExactly(1);
+        assertSize(bitmap, 2000, 2000);
+    }
+
+    @Test
+    public void zoomedAndPannedViewportIsSampledToOutputSize() throws Exception {
+        final Bitmap bitmap = source.decodeRegion(viewport(160, 120), BITMAP_WIDTH, BITMAP_HEIGHT,
+                OutputSize.atMost(VIEW_SIZE, VIEW_SIZE), null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(600, 200, 2600, 2200));
+        assertThat(FakeRegionDecoder.decodedSampleSizes()).containsExactly(4);
+        assertSize(bitmap, VIEW_SIZE, VIEW_SIZE);
+    }
+
+    @Test
+    public void viewportPannedPastTheEdgeIsClampedToTheSource() throws Exception {
+        final Bitmap bitmap = source.decodeRegion(viewport(350, 250), BITMAP_WIDTH, BITMAP_HEIGHT, OutputSize.ORIGINAL, null);
+
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(2500, 1500, ORIGINAL_WIDTH, ORIGINAL_HEIGHT));
+        assertSize(bitmap, 1500, 1500);
+    }
+
+    @Test
+    public void transposedSourceIsDecodedFromStoredPixelsAndDrawnUpright() throws Exception {
+        final OriginalSource rotated = new OriginalSource(RuntimeEnvironment.application, folder.newFile("rotated.jpg")) {
+            @Override
+            int getOrientation() {
+                return Orientation.ROTATE_90;
+            }
+        };
+
+        // Upright, the displayed bitmap is BITMAP_HEIGHT x BITMAP_WIDTH and the viewport overhangs its left edge
+        final Bitmap bitmap = rotated.decodeRegion(viewport(90, 200), BITMAP_HEIGHT, BITMAP_WIDTH, OutputSize.ORIGINAL, null);
+
+        // Upright region 0, 1000 - 1900, 3000 is rotated back into the stored original
+        assertThat(FakeRegionDecoder.decodedRegions()).containsExactly(new Rect(1000, 1100, 3000, ORIGINAL_HEIGHT));
+        assertSize(bitmap, 1900, 2000);
+    }
+
+    @Test
+    public void cropFromOriginalDecodesTheOriginal() throws Exception {
+        final File original = folder.newFile("cropped-original.jpg");
+        final CropView cropView = TestCropViews.laidOut(VIEW_SIZE);
+        cropView.setImageBitmap(Bitmap.createBitmap(BITMAP_WIDTH, BITMAP_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        cropView.extensions().crop().fromOriginal(original).executor(TestCropViews.DIRECT)
+                .into(new File(folder.getRoot(), "cropped.jpg")).get();
+
+        assertThat(FakeRegionDecoder.openedCount()).isEqualTo(1);
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(1);
+        final Rect region = FakeRegionDecoder.decodedRegions().get(0);
+        assertThat(new Rect(0, 0, ORIGINAL_WIDTH, ORIGINAL_HEIGHT).contains(region)).isTrue();
+    }
+
+    /**
+     * @return Part of the displayed bitmap seen through a {@link #VIEW_SIZE} square viewport zoomed to {@link #SCALE} and
+     * panned to center on {@code centerX, centerY}.
+     */
+    private static RectF viewport(float centerX, float centerY) {
+        final float halfSize = VIEW_SIZE / 2f / SCALE;
+        return new RectF(centerX - halfSize, centerY - halfSize, centerX + halfSize, centerY + halfSize);
+    }
+
+    private static void assertSize(Bitmap bitmap, int width, int height) {
+        assertThat(bitmap.getWidth()).isEqualTo(width);
+        assertThat(bitmap.getHeight()).isEqualTo(height);
+    }
+}
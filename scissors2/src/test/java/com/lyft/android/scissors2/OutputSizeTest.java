@@ -0,0 +1,74 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Rect;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class OutputSizeTest {
+
+    @Test
+    public void originalKeepsCropSize() {
+        assertSize(OutputSize.ORIGINAL.resolve(1234, 567), 1234, 567);
+    }
+
+    @Test
+    public void exactlyStretchesAndUpscalesToGivenSize() {
+        final OutputSize outputSize = OutputSize.exactly(200, 100);
+
+        assertSize(outputSize.resolve(1000, 1000), 200, 100);
+        assertSize(outputSize.resolve(50, 50), 200, 100);
+    }
+
+    @Test
+    public void atMostScalesDownKeepingAspectRatio() {
+        final OutputSize outputSize = OutputSize.atMost(200, 200);
+
+        assertSize(outputSize.resolve(1000, 500), 200, 100);
+        assertSize(outputSize.resolve(500, 1000), 100, 200);
+        assertSize(outputSize.resolve(3000, 2001), 200, 133);
+    }
+
+    @Test
+    public void atMostDoesNotUpscale() {
+        final OutputSize outputSize = OutputSize.atMost(200, 200);
+
+        assertSize(outputSize.resolve(150, 50), 150, 50);
+        assertSize(outputSize.resolve(200, 200), 200, 200);
+    }
+
+    @Test
+    public void atMostKeepsAtLeastOnePixelOnExtremeAspectRatios() {
+        final OutputSize outputSize = OutputSize.atMost(100, 100);
+
+        assertSize(outputSize.resolve(100000, 10), 100, 1);
+        assertSize(outputSize.resolve(10, 100000), 1, 100);
+        assertSize(outputSize.resolve(20000, 150), 100, 1);
+        assertSize(outputSize.resolve(20000, 300), 100, 2);
+    }
+
+    @Test
+    public void emptySizesAreRejected() {
+        try {
+            OutputSize.exactly(0, 100);
+            fail("Expected failure");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            OutputSize.atMost(100, 0);
+            fail("Expected failure");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void assertSize(Rect size, int width, int height) {
+        assertThat(size.width()).isEqualTo(width);
+        assertThat(size.height()).isEqualTo(height);
+    }
+}
@@ -0,0 +1,61 @@
+package com.lyft.android.scissors2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrioritySubmitTest {
+
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void higherPriorityRunsFirst() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        Utils.submit(executor, CropRequest.Priority.NORMAL, "test", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Utils.submit(executor, CropRequest.Priority.LOW, "test", record(order, "low"));
+        Utils.submit(executor, CropRequest.Priority.NORMAL, "test", record(order, "normal-1"));
+        Utils.submit(executor, CropRequest.Priority.HIGH, "test", record(order, "high"));
+        Future<Void> last = Utils.submit(executor, CropRequest.Priority.NORMAL, "test", record(order, "normal-2"));
+        Future<Void> lowest = Utils.submit(executor, CropRequest.Priority.LOW, "test", record(order, "low-2"));
+
+        blocked.countDown();
+        lowest.get(5, TimeUnit.SECONDS);
+
+        assertThat(last.isDone()).isTrue();
+        assertThat(order).containsExactly("high", "normal-1", "normal-2", "low", "low-2");
+    }
+
+    private static Runnable record(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+}
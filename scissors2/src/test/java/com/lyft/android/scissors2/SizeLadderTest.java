@@ -0,0 +1,94 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = SizeLadderTest.SizeWritingBitmap.class)
+public class SizeLadderTest {
+
+    private static final int VIEW_SIZE = 500;
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CropView cropView;
+
+    @Before
+    public void setUp() {
+        cropView = TestCropViews.showingBitmap(VIEW_SIZE);
+        // A 500x250 crop
+        cropView.setViewportRatio(2f);
+    }
+
+    @Test
+    public void everySizeIsWrittenWithinItsMaximumKeepingAspectRatio() throws Exception {
+        final Map<Integer, File> files = files(400, 100, 30);
+
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).into(files).get();
+
+        assertSize(files.get(400), 400, 200);
+        assertSize(files.get(100), 100, 50);
+        assertSize(files.get(30), 30, 15);
+    }
+
+    @Test
+    public void sizesLargerThanTheCropAreWrittenAtCropSize() throws Exception {
+        final Map<Integer, File> files = files(1000, 800, 250);
+
+        cropView.extensions().crop().executor(TestCropViews.DIRECT).into(files).get();
+
+        assertSize(files.get(1000), VIEW_SIZE, VIEW_SIZE / 2);
+        assertSize(files.get(800), VIEW_SIZE, VIEW_SIZE / 2);
+        assertSize(files.get(250), 250, 125);
+    }
+
+    private Map<Integer, File> files(int... sizes) {
+        final Map<Integer, File> files = new LinkedHashMap<>();
+        for (int size : sizes) {
+            files.put(size, new File(folder.getRoot(), "cropped-" + size + ".jpg"));
+        }
+        return files;
+    }
+
+    private static void assertSize(File file, int width, int height) throws IOException {
+        assertThat(new String(Files.readAllBytes(file.toPath()), US_ASCII)).isEqualTo(width + "x" + height);
+    }
+
+    /**
+     * Compresses bitmaps into their size alone, so that it can be read back from written files.
+     */
+    @Implements(Bitmap.class)
+    public static class SizeWritingBitmap extends ShadowBitmap {
+
+        @Implementation
+        @Override
+        public boolean compress(Bitmap.CompressFormat format, int quality, OutputStream stream) {
+            try {
+                stream.write((getWidth() + "x" + getHeight()).getBytes(US_ASCII));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.lyft.android.scissors2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class StripEncoderTest {
+
+    @Test
+    public void pngRoundTripsExactly() throws IOException {
+        final int width = 37;
+        final int height = 23;
+        final int[] pixels = pattern(width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (pixels[i] & 0xFFFFFF) | (i * 7 & 0xFF) << 24;
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encodeInStrips(new PngStripEncoder(width, height, outputStream), pixels, width, height, 5);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertThat(image.getWidth()).isEqualTo(width);
+        assertThat(image.getHeight()).isEqualTo(height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertThat(image.getRGB(x, y)).isEqualTo(pixels[y * width + x]);
+            }
+        }
+    }
+
+    @Test
+    public void jpegDecodesCloseToSource() throws IOException {
+        final int width = 101;
+        final int height = 67;
+        final int[] pixels = pattern(width, height);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encodeInStrips(new JpegStripEncoder(width, height, 95, outputStream), pixels, width, height, 7);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertThat(image.getWidth()).isEqualTo(width);
+        assertThat(image.getHeight()).isEqualTo(height);
+
+        long error = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int expected = pixels[y * width + x];
+                final int actual = image.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    error += Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF));
+                }
+            }
+        }
+        assertThat(error / (width * height * 3.0)).isLessThan(4.0);
+    }
+
+    @Test
+    public void jpegOutputDoesNotDependOnStripHeight() throws IOException {
+        final int width = 48;
+        final int height = 40;
+        final int[] pixels = pattern(width, height);
+
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        encodeInStrips(new JpegStripEncoder(width, height, 80, whole), pixels, width, height, height);
+        ByteArrayOutputStream strips = new ByteArrayOutputStream();
+        encodeInStrips(new JpegStripEncoder(width, height, 80, strips), pixels, width, height, 3);
+
+        assertThat(strips.toByteArray()).isEqualTo(whole.toByteArray());
+    }
+
+    @Test
+    public void jpegRejectsDimensionsOverSixteenBits() {
+        try {
+            new JpegStripEncoder(0x10000, 1, 80, new ByteArrayOutputStream());
+            fail("Expected failure");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new JpegStripEncoder(1, 0x10000, 80, new ByteArrayOutputStream());
+            fail("Expected failure");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void encodeInStrips(StripEncoder encoder, int[] pixels, int width, int height, int stripHeight)
+            throws IOException {
+        try {
+            for (int top = 0; top < height; top += stripHeight) {
+                encoder.writeRows(pixels, top * width, width, Math.min(stripHeight, height - top));
+            }
+        } finally {
+            encoder.release();
+        }
+    }
+
+    private static int[] pattern(int width, int height) {
+        final int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int r = x * 255 / width;
+                final int g = y * 255 / height;
+                final int b = (x + y) * 127 / (width + height);
+                pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,50 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.view.View;
+import java.util.concurrent.Executor;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Crop views laid out outside of any window, with a square viewport and no tile cache, as most tests need them.
+ */
+final class TestCropViews {
+
+    static final int BITMAP_SIZE = 1000;
+
+    /**
+     * Runs tasks right away on the submitting thread.
+     */
+    static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private TestCropViews() {
+    }
+
+    /**
+     * @return A {@link CropView} measured and laid out at {@code size x size}, showing no bitmap yet.
+     */
+    static CropView laidOut(int size) {
+        final CropView cropView = new CropView(RuntimeEnvironment.application);
+        cropView.setViewportRatio(1f);
+        cropView.setTileCacheSize(0);
+        cropView.measure(View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY));
+        cropView.layout(0, 0, size, size);
+        return cropView;
+    }
+
+    /**
+     * @return A {@link CropView} laid out as by {@link #laidOut(int)}, showing a blank
+     * {@value #BITMAP_SIZE}x{@value #BITMAP_SIZE} bitmap.
+     */
+    static CropView showingBitmap(int size) {
+        final CropView cropView = laidOut(size);
+        cropView.setImageBitmap(Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888));
+        return cropView;
+    }
+}
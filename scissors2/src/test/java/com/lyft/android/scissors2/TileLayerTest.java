@@ -0,0 +1,198 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.View;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = FakeRegionDecoder.class)
+public class TileLayerTest {
+
+    private static final int VIEW_SIZE = 500;
+    // Displayed at an eighth of the original, so that zooming in 4x decodes tiles at sample size 2
+    private static final int ORIGINAL_WIDTH = 4000;
+    private static final int ORIGINAL_HEIGHT = 3000;
+    private static final int BITMAP_WIDTH = 500;
+    private static final int BITMAP_HEIGHT = 375;
+    private static final float SCALE = 4f;
+    private static final int TILE_BYTES = TileLayer.TILE_SIZE * TileLayer.TILE_SIZE * 4;
+    private static final Rect TOP_LEFT_TILE = new Rect(0, 0, 2 * TileLayer.TILE_SIZE, 2 * TileLayer.TILE_SIZE);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> queue = new ArrayList<>();
+    private final Executor queued = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+    };
+
+    private final Canvas canvas = new Canvas(Bitmap.createBitmap(VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888));
+    // Viewport in displayed bitmap coordinates, zoomed in around its top left corner
+    private final RectF viewport = new RectF(0, 0, VIEW_SIZE / SCALE, VIEW_SIZE / SCALE);
+    private final Matrix uprightToView = new Matrix();
+
+    private TileLayer tileLayer;
+
+    @Before
+    public void setUp() {
+        FakeRegionDecoder.setSize(ORIGINAL_WIDTH, ORIGINAL_HEIGHT);
+    }
+
+    @Test
+    public void sampleSizeKeepsAtLeastOneSourcePixelPerScreenPixel() {
+        assertThat(TileLayer.sampleSizeFor(0.5f)).isEqualTo(1);
+        assertThat(TileLayer.sampleSizeFor(1f)).isEqualTo(1);
+        assertThat(TileLayer.sampleSizeFor(1.9f)).isEqualTo(1);
+        assertThat(TileLayer.sampleSizeFor(2f)).isEqualTo(2);
+        assertThat(TileLayer.sampleSizeFor(7.5f)).isEqualTo(4);
+        assertThat(TileLayer.sampleSizeFor(8f)).isEqualTo(8);
+    }
+
+    @Test
+    public void cacheIsBoundedInBytesAndEvictsLeastRecentlyUsedTiles() throws Exception {
+        open(2L * TILE_BYTES);
+
+        draw();
+        runQueue();
+
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(4);
+        assertThat(tileLayer.cachedTileCount()).isEqualTo(2);
+        assertThat(tileLayer.cachedByteCount()).isEqualTo(2 * TILE_BYTES);
+
+        // The first two tiles decoded were evicted, and are queued again
+        draw();
+        assertThat(tileLayer.queuedTileCount()).isEqualTo(2);
+        runQueue();
+        assertThat(FakeRegionDecoder.decodedRegions().subList(4, 6))
+                .containsExactlyElementsOf(FakeRegionDecoder.decodedRegions().subList(0, 2));
+    }
+
+    @Test
+    public void tilesOutOfViewAreDroppedFromQueue() throws Exception {
+        open(Long.MAX_VALUE);
+
+        draw();
+        assertThat(tileLayer.queuedTileCount()).isEqualTo(4);
+        pan();
+        draw();
+        runQueue();
+
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(9).doesNotContain(TOP_LEFT_TILE);
+        assertThat(tileLayer.queuedTileCount()).isZero();
+    }
+
+    @Test
+    public void tileOfPreviousSourceIsDiscarded() throws Exception {
+        open(Long.MAX_VALUE);
+        FakeRegionDecoder.onNextDecode(new Runnable() {
+            @Override
+            public void run() {
+                tileLayer.setSource(newSource("other.jpg"), BITMAP_WIDTH, BITMAP_HEIGHT);
+            }
+        });
+
+        draw();
+        runQueue();
+
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(1);
+        assertThat(tileLayer.cachedTileCount()).isZero();
+        assertThat(FakeRegionDecoder.openedCount()).isEqualTo(2);
+
+        draw();
+        runQueue();
+
+        assertThat(tileLayer.cachedTileCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void decoderClosedWhileDecodingIsReleasedOnceDone() throws Exception {
+        open(Long.MAX_VALUE);
+        final int[] recycledWhileDecoding = new int[1];
+        FakeRegionDecoder.onNextDecode(new Runnable() {
+            @Override
+            public void run() {
+                tileLayer.clear();
+                recycledWhileDecoding[0] = FakeRegionDecoder.recycledCount();
+            }
+        });
+
+        draw();
+        runQueue();
+
+        assertThat(recycledWhileDecoding[0]).isZero();
+        assertThat(FakeRegionDecoder.recycledCount()).isEqualTo(1);
+        assertThat(FakeRegionDecoder.decodedRegions()).hasSize(1);
+        assertThat(tileLayer.cachedTileCount()).isZero();
+    }
+
+    @Test
+    public void tileQueuedOnceDrainIsDoneStartsAnotherDrain() throws Exception {
+        open(Long.MAX_VALUE);
+
+        draw();
+        runQueue();
+        pan();
+        draw();
+
+        assertThat(queue).hasSize(1);
+        runQueue();
+        assertThat(tileLayer.queuedTileCount()).isZero();
+    }
+
+    /**
+     * Sets up a layer holding at most {@code maxSize} bytes, and opens its decoder.
+     */
+    private void open(long maxSize) throws Exception {
+        tileLayer = new TileLayer(new View(RuntimeEnvironment.application), queued, maxSize);
+        tileLayer.setSource(newSource("original.jpg"), BITMAP_WIDTH, BITMAP_HEIGHT);
+        runQueue();
+        assertThat(FakeRegionDecoder.openedCount()).isEqualTo(1);
+    }
+
+    private OriginalSource newSource(String name) {
+        try {
+            return new OriginalSource(RuntimeEnvironment.application, folder.newFile(name));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Draws at {@link #SCALE}, the viewport being mapped through an identity transform so that it is what the layer sees.
+     */
+    private void draw() {
+        tileLayer.draw(canvas, uprightToView, SCALE, viewport);
+    }
+
+    /**
+     * Pans by a viewport down and right, away from the top left tile.
+     */
+    private void pan() {
+        viewport.offset(viewport.width(), viewport.height());
+    }
+
+    private void runQueue() {
+        while (!queue.isEmpty()) {
+            queue.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.lyft.android.scissors2;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.widget.ImageView;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.util.Scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Feeds gestures through {@link TouchManager#onEvent(MotionEvent)} and steps the flings and zooms they start one frame callback
+ * at a time, measuring what {@link TouchManager} allocates on top of the gesture detectors it drives.
+ * <p>
+ * Robolectric dispatches calls to shadowed framework methods through reflection, so that the few calls {@link TouchManager}
+ * makes itself, such as reading the action of an event or the animation clock, cost a few dozen bytes each that a device does
+ * not allocate. Limits leave room for those, but not for copying an event, a matrix or a callback. Reflection also allocates
+ * now and then as the JVM generates accessors for the methods Robolectric calls, so that each figure is the lowest of several
+ * replays.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(manifest = Config.NONE,
+        shadows = {
+                GestureReplayTest.RealScaleGestureDetector.class,
+                GestureReplayTest.RealOverScroller.class,
+                GestureReplayTest.UnpooledVelocityTracker.class,
+                GestureReplayTest.PhoneViewConfiguration.class,
+                TouchAllocationTest.SteppedChoreographer.class
+        })
+public class TouchAllocationTest {
+
+    private static final long FRAME_MS = 16;
+    private static final long SETTLE_MS = 1000;
+    private static final int WARM_UP_REPLAYS = 3;
+    private static final int MEASURED_REPLAYS = 5;
+    private static final long EVENT_LIMIT_BYTES = 128;
+    private static final long FRAME_LIMIT_BYTES = 128;
+
+    /**
+     * The gestures of {@link GestureReplayTest}.
+     */
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { GestureReplayTest.FAST_FLING, "fast_fling.trace" },
+                { GestureReplayTest.PINCH, "pinch.trace" },
+                { GestureReplayTest.DOUBLE_TAP_STORM, "double_tap_storm.trace" }
+        });
+    }
+
+    private final String name;
+    private final String fileName;
+    private final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    private final long threadId = Thread.currentThread().getId();
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private GestureTrace trace;
+
+    public TouchAllocationTest(String name, String fileName) {
+        this.name = name;
+        this.fileName = fileName;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        trace = GestureReplayTest.readTrace(fileName);
+        SteppedChoreographer.FRAMES.clear();
+    }
+
+    @Test
+    public void eventsAllocateNoMoreThanDetectors() {
+        final Replay replay = measure();
+
+        assertThat((replay.eventBytes - replay.detectorBytes) / trace.size()).isLessThanOrEqualTo(EVENT_LIMIT_BYTES);
+    }
+
+    @Test
+    public void framesAllocateNothingOfTheirOwn() {
+        final Replay replay = measure();
+
+        if (name.equals(GestureReplayTest.PINCH)) {
+            assertThat(replay.frames).isZero();
+        } else {
+            assertThat(replay.frames).isGreaterThan(0);
+            assertThat(replay.frameBytes / replay.frames).isLessThanOrEqualTo(FRAME_LIMIT_BYTES);
+        }
+    }
+
+    /**
+     * Replays {@link #trace} until classes are loaded and compiled, then a few more times to measure it.
+     */
+    private Replay measure() {
+        for (int i = 0; i < WARM_UP_REPLAYS; i++) {
+            replay();
+        }
+        final Replay lowest = replay();
+        for (int i = 1; i < MEASURED_REPLAYS; i++) {
+            final Replay replay = replay();
+            lowest.eventBytes = Math.min(lowest.eventBytes, replay.eventBytes);
+            lowest.detectorBytes = Math.min(lowest.detectorBytes, replay.detectorBytes);
+            lowest.frameBytes = Math.min(lowest.frameBytes, replay.frameBytes);
+        }
+        return lowest;
+    }
+
+    /**
+     * Feeds every event of {@link #trace} to a new {@link TouchManager} at the time it was recorded, and to bare detectors
+     * answering its listeners the same way, running frames due in between.
+     */
+    private Replay replay() {
+        final ImageView view = new ImageView(RuntimeEnvironment.application);
+        final CropViewConfig config = CropViewConfig.from(view.getContext(), null);
+        config.setViewportRatio(1f);
+        final TouchManager touchManager = new TouchManager(view, config);
+        touchManager.resetFor(8000, 3000, 0, 1000, 1000);
+        final ScaleGestureDetector scaleDetector = new ScaleGestureDetector(view.getContext(), new ScaleListener());
+        final GestureDetector gestureDetector = new GestureDetector(view.getContext(), new GestureListener());
+        gestureDetector.setIsLongpressEnabled(false);
+
+        final Replay replay = new Replay();
+        long downTime = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            if (i > 0) {
+                runFrames(trace.getEventTime(i) - trace.getEventTime(i - 1), replay);
+            }
+            final long eventTime = SystemClock.uptimeMillis();
+            if ((trace.getAction(i) & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+                downTime = eventTime;
+            }
+            final MotionEvent event = GestureReplayTest.obtain(trace, i, downTime, eventTime);
+
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            scaleDetector.onTouchEvent(event);
+            gestureDetector.onTouchEvent(event);
+            replay.detectorBytes += threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            touchManager.onEvent(event);
+            replay.eventBytes += threadBean.getThreadAllocatedBytes(threadId) - before;
+            event.recycle();
+        }
+        runFrames(SETTLE_MS, replay);
+        assertThat(touchManager.isMoving()).isFalse();
+        return replay;
+    }
+
+    /**
+     * Advances the clock by {@code millis}, running the frame callback posted if any once per frame.
+     */
+    private void runFrames(long millis, Replay replay) {
+        long elapsed = 0;
+        for (; elapsed + FRAME_MS <= millis; elapsed += FRAME_MS) {
+            scheduler.advanceBy(FRAME_MS);
+            final List<Choreographer.FrameCallback> frames = SteppedChoreographer.FRAMES;
+            for (int i = frames.size(); i > 0; i--) {
+                final Choreographer.FrameCallback frame = frames.remove(0);
+                final long before = threadBean.getThreadAllocatedBytes(threadId);
+                frame.doFrame(System.nanoTime());
+                replay.frameBytes += threadBean.getThreadAllocatedBytes(threadId) - before;
+                replay.frames++;
+            }
+        }
+        scheduler.advanceBy(millis - elapsed);
+    }
+
+    private static class Replay {
+
+        long eventBytes;
+        long detectorBytes;
+        long frameBytes;
+        int frames;
+    }
+
+    /**
+     * Answers like the scale listener of {@link TouchManager}, so that detectors take the same paths.
+     */
+    private static class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            return true;
+        }
+    }
+
+    /**
+     * Answers like the gesture listener of {@link TouchManager}, so that detectors take the same paths.
+     */
+    private static class GestureListener extends GestureDetector.SimpleOnGestureListener {
+
+        @Override
+        public boolean onDown(MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            return true;
+        }
+
+        @Override
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            return true;
+        }
+    }
+
+    /**
+     * Holds frame callbacks until the test runs them, rather than posting them to the main looper.
+     */
+    @Implements(Choreographer.class)
+    public static class SteppedChoreographer extends ShadowChoreographer {
+
+        static final List<Choreographer.FrameCallback> FRAMES = new ArrayList<>();
+
+        @Implementation
+        @Override
+        public void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis) {
+            FRAMES.add(callback);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.lyft.android.scissors2;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.widget.ImageView;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TouchInvalidationTest {
+
+    private CropViewConfig config;
+    private CountingImageView view;
+    private TouchManager touchManager;
+    private long downTime;
+    private long eventTime;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        config = CropViewConfig.from(context, null);
+        config.setViewportRatio(1f);
+        view = new CountingImageView(context);
+        touchManager = new TouchManager(view, config);
+        // 1000x500 once scaled into a 500x500 viewport, so that it only moves horizontally
+        touchManager.resetFor(2000, 1000, 0, 500, 500);
+    }
+
+    @Test
+    public void stationaryTouchDoesNotRedraw() {
+        touch(MotionEvent.ACTION_DOWN, 250, 250);
+        touch(MotionEvent.ACTION_MOVE, 250, 250);
+        touch(MotionEvent.ACTION_UP, 250, 250);
+
+        assertThat(view.invalidations).isZero();
+    }
+
+    @Test
+    public void clampedDragDoesNotRedraw() {
+        touch(MotionEvent.ACTION_DOWN, 250, 100);
+        touch(MotionEvent.ACTION_MOVE, 250, 200);
+        touch(MotionEvent.ACTION_MOVE, 250, 300);
+        touch(MotionEvent.ACTION_UP, 250, 300);
+
+        assertThat(view.invalidations).isZero();
+    }
+
+    @Test
+    public void dragRedrawsOncePerMove() {
+        touch(MotionEvent.ACTION_DOWN, 100, 250);
+        touch(MotionEvent.ACTION_MOVE, 200, 250);
+        touch(MotionEvent.ACTION_MOVE, 300, 250);
+        touch(MotionEvent.ACTION_UP, 300, 250);
+
+        assertThat(view.invalidations).isEqualTo(2);
+    }
+
+    @Test
+    public void adaptiveQualityRedrawsOnceSettled() {
+        config.setAdaptiveQuality(true);
+
+        touch(MotionEvent.ACTION_DOWN, 100, 250);
+        touch(MotionEvent.ACTION_MOVE, 200, 250);
+        assertThat(touchManager.isMoving()).isTrue();
+        touch(MotionEvent.ACTION_UP, 200, 250);
+
+        assertThat(touchManager.isMoving()).isFalse();
+        assertThat(view.invalidations).isEqualTo(2);
+    }
+
+    @Test
+    public void adaptiveQualityDoesNotRedrawStationaryTouch() {
+        config.setAdaptiveQuality(true);
+
+        touch(MotionEvent.ACTION_DOWN, 250, 250);
+        touch(MotionEvent.ACTION_UP, 250, 250);
+
+        assertThat(view.invalidations).isZero();
+    }
+
+    private void touch(int action, float x, float y) {
+        // A second apart, slow enough never to fling
+        eventTime += 1000;
+        if (action == MotionEvent.ACTION_DOWN) {
+            downTime = eventTime;
+        }
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        touchManager.onEvent(event);
+        event.recycle();
+    }
+
+    private static class CountingImageView extends ImageView {
+
+        int invalidations;
+
+        CountingImageView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate() {
+            invalidations++;
+        }
+
+        @Override
+        public void postInvalidateOnAnimation() {
+            invalidations++;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.lyft.android.scissors2;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.util.DisplayMetrics;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+
+/**
+ * Keeps count of the bytes held by bitmaps which are neither recycled nor mere bounds, and of their peak since the last
+ * {@link #resetPeak()}, as if shadow bitmaps held pixels.
+ */
+@Implements(Bitmap.class)
+public class TrackingShadowBitmap extends ShadowBitmap {
+
+    private static final Object LOCK = new Object();
+    private static long liveBytes;
+    private static long peakBytes;
+
+    private long trackedBytes;
+
+    public static long liveBytes() {
+        synchronized (LOCK) {
+            return liveBytes;
+        }
+    }
+
+    public static long peakBytes() {
+        synchronized (LOCK) {
+            return peakBytes;
+        }
+    }
+
+    /**
+     * Starts measuring a new peak from the bytes currently held.
+     */
+    public static void resetPeak() {
+        synchronized (LOCK) {
+            peakBytes = liveBytes;
+        }
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+        return tracked(ShadowBitmap.createBitmap(width, height, config));
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(DisplayMetrics displayMetrics, int width, int height, Bitmap.Config config) {
+        return tracked(ShadowBitmap.createBitmap(displayMetrics, width, height, config));
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(int[] colors, int width, int height, Bitmap.Config config) {
+        return tracked(ShadowBitmap.createBitmap(colors, width, height, config));
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height) {
+        return tracked(ShadowBitmap.createBitmap(source, x, y, width, height));
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height, Matrix matrix, boolean filter) {
+        return tracked(ShadowBitmap.createBitmap(source, x, y, width, height, matrix, filter));
+    }
+
+    @Implementation
+    public static Bitmap createScaledBitmap(Bitmap source, int width, int height, boolean filter) {
+        return tracked(ShadowBitmap.createScaledBitmap(source, width, height, filter));
+    }
+
+    @Implementation
+    @Override
+    public Bitmap copy(Bitmap.Config config, boolean isMutable) {
+        return tracked(super.copy(config, isMutable));
+    }
+
+    @Override
+    public void setWidth(int width) {
+        super.setWidth(width);
+        track();
+    }
+
+    @Override
+    public void setHeight(int height) {
+        super.setHeight(height);
+        track();
+    }
+
+    @Override
+    public void setConfig(Bitmap.Config config) {
+        super.setConfig(config);
+        track();
+    }
+
+    @Implementation
+    @Override
+    public void recycle() {
+        super.recycle();
+        track();
+    }
+
+    /**
+     * Counts {@code bitmap}, which shadow factories size without going through setters.
+     */
+    private static Bitmap tracked(Bitmap bitmap) {
+        if (bitmap != null) {
+            ((TrackingShadowBitmap) ShadowExtractor.extract(bitmap)).track();
+        }
+        return bitmap;
+    }
+
+    private void track() {
+        final String description = getDescription();
+        final boolean bounds = description != null && description.contains("inJustDecodeBounds");
+        // Scaled shadow bitmaps lose their config, which is ARGB_8888 for all of the scaling done here
+        final long bytes = isRecycled() || bounds
+                ? 0
+                : (long) getWidth() * getHeight() * (getConfig() == null ? 4 : getBytesPerPixel(getConfig()));
+
+        synchronized (LOCK) {
+            liveBytes += bytes - trackedBytes;
+            peakBytes = Math.max(peakBytes, liveBytes);
+        }
+        trackedBytes = bytes;
+    }
+}